@@ -0,0 +1,59 @@
+package me.eternalhuman.packetboard;
+
+import com.google.gson.JsonParser;
+import com.viaversion.nbt.io.NBTIO;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.PooledByteBufAllocator;
+import me.eternalhuman.packetboard.util.JsonNbtTranscoder;
+import me.eternalhuman.packetboard.util.NbtComponentSerializer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares streaming JSON to NBT transcoding with the tree conversion which was used before.
+ * Run with {@code ./gradlew jmh}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ComponentEncodeBenchmark {
+
+    @Param({
+            "{\"text\":\"\"}",
+            "{\"text\":\"\u00a7eOnline: \u00a7f120\",\"bold\":true,\"color\":\"gold\"}",
+            "{\"text\":\"\",\"extra\":[{\"text\":\"Coins: \",\"color\":\"gray\"},"
+                    + "{\"text\":\"1 024\",\"color\":\"#FFD700\",\"bold\":true},"
+                    + "{\"translate\":\"key.jump\",\"with\":[{\"text\":\"a\"},{\"text\":\"b\"}]}]}"
+    })
+    public String json;
+
+    private ByteBuf buf;
+
+    @Setup
+    public void setup() {
+        buf = PooledByteBufAllocator.DEFAULT.buffer(1024);
+    }
+
+    @TearDown
+    public void tearDown() {
+        buf.release();
+    }
+
+    @Benchmark
+    public ByteBuf tree() throws IOException {
+        buf.clear();
+        NBTIO.writeTag(new ByteBufOutputStream(buf),
+                NbtComponentSerializer.jsonComponentToTag(JsonParser.parseString(json)), false);
+        return buf;
+    }
+
+    @Benchmark
+    public ByteBuf streaming() {
+        buf.clear();
+        JsonNbtTranscoder.transcode(json, buf);
+        return buf;
+    }
+}
@@ -0,0 +1,100 @@
+package me.eternalhuman.packetboard;
+
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
+
+/**
+ * Viewers waiting to be added to a board by its scheduler, see {@link Board#addViewerAsync}.
+ * <p>
+ * The task which drains the queue is started by the first queued viewer and cancelled once the queue
+ * is drained, so an idle board schedules nothing.
+ *
+ * @param <T> - pending viewer type
+ */
+final class AdmissionQueue<T> {
+
+    private final Queue<T> queue = new ConcurrentLinkedQueue<>();
+    private final Supplier<Runnable> taskStarter;
+    // canceller of the running task, guarded by this
+    private Runnable task;
+
+    /**
+     * @param taskStarter - starts the task which calls {@link #poll} every tick and returns its canceller
+     */
+    AdmissionQueue(@NonNull Supplier<Runnable> taskStarter) {
+        this.taskStarter = taskStarter;
+    }
+
+    void add(@NonNull T element) {
+        queue.add(element);
+
+        synchronized (this) {
+            if (task == null) {
+                task = taskStarter.get();
+            }
+        }
+    }
+
+    /**
+     * Takes the viewers admitted in this tick, the task is cancelled if no viewer is left.
+     *
+     * @param rate - maximum number of viewers, 0 takes all
+     * @return admitted viewers in queue order
+     */
+    List<T> poll(int rate) {
+        List<T> admitted = new ArrayList<>();
+        T element;
+
+        while ((rate <= 0 || admitted.size() < rate) && (element = queue.poll()) != null) {
+            admitted.add(element);
+        }
+
+        synchronized (this) {
+            // viewers queued after this check start a new task
+            if (queue.isEmpty() && task != null) {
+                task.run();
+                task = null;
+            }
+        }
+
+        return admitted;
+    }
+
+    /**
+     * Cancels the task and takes all waiting viewers.
+     *
+     * @return waiting viewers in queue order
+     */
+    List<T> drain() {
+        synchronized (this) {
+            if (task != null) {
+                task.run();
+                task = null;
+            }
+        }
+
+        List<T> drained = new ArrayList<>();
+        T element;
+
+        while ((element = queue.poll()) != null) {
+            drained.add(element);
+        }
+
+        return drained;
+    }
+
+    boolean isScheduled() {
+        synchronized (this) {
+            return task != null;
+        }
+    }
+
+    int size() {
+        return queue.size();
+    }
+}
@@ -0,0 +1,83 @@
+package me.eternalhuman.packetboard;
+
+import com.google.common.base.Preconditions;
+import lombok.NonNull;
+import me.eternalhuman.packetboard.text.AnimationClock;
+import me.eternalhuman.packetboard.text.FrameCache;
+import me.eternalhuman.packetboard.text.TextIterator;
+import me.eternalhuman.packetboard.util.lang.ThrowingFunction;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Global line updater which shows the current frame of an animation. The animation is registered
+ * in the clock of the board for every line which uses the updater, and released once the line is removed
+ * or gets another updater, so an animation is advanced only while it's shown.
+ */
+final class AnimatedLineUpdater<P, R> implements ThrowingFunction<P, R, Throwable> {
+
+    private final Board<R, ?> board;
+    private final TextIterator iterator;
+    // whether the lines are sent by the animation task of the board each time the frame changes
+    private final boolean pushFrames;
+    // frames repeat, each distinct one is parsed once
+    private final FrameCache<R> frames;
+
+    // guarded by this
+    private final Map<BoardLine<?, ?>, Consumer<String>> listeners = new IdentityHashMap<>();
+    private volatile AnimationClock.Animation animation;
+
+    AnimatedLineUpdater(@NonNull Board<R, ?> board, @NonNull TextIterator iterator, boolean pushFrames) {
+        this.board = board;
+        this.iterator = iterator;
+        this.pushFrames = pushFrames;
+        this.frames = new FrameCache<>(board.textProvider::fromLegacyMessage);
+    }
+
+    @Override
+    public R apply(P player) {
+        return frame();
+    }
+
+    R frame() {
+        AnimationClock.Animation animation = this.animation;
+        Preconditions.checkState(animation != null, "Animation isn't shown by any line");
+
+        return frames.get(animation.getFrame());
+    }
+
+    synchronized void bind(@NonNull BoardLine<?, ?> line) {
+        AnimationClock.Animation animation = board.registerAnimation(iterator);
+        this.animation = animation;
+
+        if (pushFrames) {
+            Consumer<String> listener = frame -> line.animationChanged = true;
+            listeners.put(line, listener);
+            animation.addListener(listener);
+        }
+    }
+
+    synchronized void release(@NonNull BoardLine<?, ?> line) {
+        Consumer<String> listener = listeners.remove(line);
+
+        if (listener != null) {
+            animation.removeListener(listener);
+        }
+
+        board.unregisterAnimation(iterator);
+    }
+
+    static void bind(@NonNull ThrowingFunction<?, ?, Throwable> updater, @NonNull BoardLine<?, ?> line) {
+        if (updater instanceof AnimatedLineUpdater) {
+            ((AnimatedLineUpdater<?, ?>) updater).bind(line);
+        }
+    }
+
+    static void release(@NonNull ThrowingFunction<?, ?, Throwable> updater, @NonNull BoardLine<?, ?> line) {
+        if (updater instanceof AnimatedLineUpdater) {
+            ((AnimatedLineUpdater<?, ?>) updater).release(line);
+        }
+    }
+}
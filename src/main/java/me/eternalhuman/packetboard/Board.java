@@ -2,9 +2,14 @@ package me.eternalhuman.packetboard;
 
 import com.google.common.base.Preconditions;
 import com.tcoded.folialib.FoliaLib;
+import com.tcoded.folialib.enums.EntityTaskResult;
 import com.tcoded.folialib.wrapper.task.WrappedTask;
 import lombok.*;
 import lombok.experimental.FieldDefaults;
+import me.eternalhuman.packetboard.protocol.ChannelInjector;
+import me.eternalhuman.packetboard.protocol.PacketBatch;
+import me.eternalhuman.packetboard.protocol.PacketFanout;
+import me.eternalhuman.packetboard.text.AnimationClock;
 import me.eternalhuman.packetboard.text.TextIterator;
 import me.eternalhuman.packetboard.text.TextProvider;
 import me.eternalhuman.packetboard.text.provider.AdventureTextProvider;
@@ -13,11 +18,17 @@ import me.eternalhuman.packetboard.util.lang.ThrowingConsumer;
 import me.eternalhuman.packetboard.util.lang.ThrowingFunction;
 import me.eternalhuman.packetboard.util.lang.ThrowingPredicate;
 import me.eternalhuman.packetboard.util.lang.ThrowingSupplier;
-import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 import org.bukkit.plugin.Plugin;
 
+import javax.annotation.Nullable;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+import java.util.logging.Level;
 
 @FieldDefaults(level = AccessLevel.PACKAGE)
 public class Board<R, P> {
@@ -25,45 +36,135 @@ public class Board<R, P> {
     private static final String OBJECTIVE_PREFIX = "PB-";
     private static final int MAX_LINES_COUNT = 15;
 
-    private final Set<UUID> viewers = Collections.synchronizedSet(new HashSet<>());
-    private final List<BoardLine<R, P>> lines = new ArrayList<>();
+    private final ViewerRegistry viewers = new ViewerRegistry();
+    // swapped atomically on edits, mutators are serialized by the lock
+    private volatile BoardLayout<R, P> layout = BoardLayout.empty();
+    private final Object layoutLock = new Object();
     @Getter
     private final ScoreboardObjective<R> objective;
+    private final LineTemplates lineTemplates;
 
-    private TextIterator titleText;
-    private WrappedTask titleUpdater;
+    // registrations in the animation clock of the scheduler, guarded by this
+    private final List<Iterator<String>> animations = new ArrayList<>();
+    private BoardTask animationTask;
+    // set by the title animation, the frame is sent by the next animation task
+    private volatile boolean titleChanged;
+
+    private AnimationClock.Animation titleAnimation;
+    private Consumer<String> titleListener;
     private ThrowingFunction<P, R, Throwable> titleFunction;
 
     final Set<WrappedTask> tasks = new HashSet<>();
+    final Set<BoardTask> scheduledTasks = ConcurrentHashMap.newKeySet();
     final TextProvider<R> textProvider;
     final ThrowingFunction<Player, P, Throwable> playerFunction;
 
     @Getter
     private final Plugin plugin;
 
+    @Getter
+    private final BoardScheduler scheduler;
+
     @Getter
     private final FoliaLib foliaLib;
 
+    /**
+     * Whether packets of one update are written without flushing, and every viewer's channel
+     * is flushed once at the end of the update. Enabled by default.
+     *
+     * @see PacketBatch
+     */
+    @Getter
+    @Setter
+    private volatile boolean batchPackets = true;
+
+    /**
+     * Whether packets of one update are wrapped into a bundle, so the client applies them in the same tick
+     * without flickering. Works only with {@link #isBatchPackets() batching} on 1.19.4+ servers.
+     * Disabled by default.
+     */
+    @Getter
+    @Setter
+    private volatile boolean bundleUpdates;
+
+    /**
+     * Whether packets are encoded and written by the Netty event loop of each viewer, in a single task
+     * per viewer and update. Texts are still rendered by the updating thread.
+     * Works only with {@link #isBatchPackets() batching}. Disabled by default.
+     */
+    @Getter
+    @Setter
+    private volatile boolean eventLoopEncoding;
+
+    /**
+     * Whether periodic updates are spread over their period: each tick renders only the viewers whose
+     * phase, a hash of the UUID modulo the period, falls into it, so every viewer is still updated once per period,
+     * but a board with many viewers doesn't render all of them in one tick. Applies to updates scheduled
+     * after the change. Disabled by default.
+     */
+    @Getter
+    @Setter
+    private volatile boolean staggerUpdates;
+
+    /**
+     * Whether player-dependent texts are rendered on Folia by the region thread which owns the player,
+     * via its entity scheduler, instead of the updating thread. Packets are then encoded by the event loop
+     * of the viewer, so region threads only collect the values. Works on Folia only, encoding is moved
+     * off the region only with {@link #isBatchPackets() batching}. Disabled by default.
+     */
+    @Getter
+    @Setter
+    private volatile boolean regionRendering;
+
+    /**
+     * Whether all lines have the same score and the client orders them by their entry names instead.
+     * Every position of the board is then a fixed team and entry, so moving, inserting or removing a line
+     * updates only the texts of the positions in between and never sends scores. Score numbers are still
+     * shown by clients older than 1.20.3 unless hidden by the number format. Set by the builder.
+     */
+    @Getter
+    @Setter(AccessLevel.PACKAGE)
+    private boolean stableOrdering;
+
+    /**
+     * Maximum number of viewers which {@link #addViewerAsync} adds per tick, the rest waits for the next ticks,
+     * so a burst of joins is spread instead of rendering every board in one tick. 0 admits all waiting viewers
+     * in the next tick. 0 by default.
+     */
+    @Getter
+    @Setter
+    private volatile int admissionRate;
+
+    private final AdmissionQueue<PendingViewer> admissionQueue = new AdmissionQueue<>(
+            () -> schedule(BoardTask.Type.ADMISSION, null, 1, 1, true, false)::cancel);
+
     Board(@NonNull R title, @NonNull Plugin plugin, @NonNull TextProvider<R> textProvider,
           ThrowingFunction<Player, P, Throwable> playerFunction) {
         this.plugin = plugin;
-        this.foliaLib = new FoliaLib(plugin);
+        this.scheduler = BoardScheduler.of(plugin);
+        this.foliaLib = scheduler.getFoliaLib();
+        ChannelInjector.IMP.registerListener(plugin);
         this.textProvider = textProvider;
         this.playerFunction = playerFunction;
         this.objective = new ScoreboardObjective<>(OBJECTIVE_PREFIX + RandomString.generate(3), title, textProvider);
+        this.lineTemplates = new LineTemplates(objective.getName());
     }
 
     Board(@NonNull TextIterator titleIterator, @NonNull Plugin plugin, @NonNull TextProvider<R> textProvider,
           ThrowingFunction<Player, P, Throwable> playerFunction) {
         this.plugin = plugin;
-        this.foliaLib = new FoliaLib(plugin);
+        this.scheduler = BoardScheduler.of(plugin);
+        this.foliaLib = scheduler.getFoliaLib();
+        ChannelInjector.IMP.registerListener(plugin);
         this.textProvider = textProvider;
         this.playerFunction = playerFunction;
 
+        // display name is set from the current frame of the animation
         this.objective = new ScoreboardObjective<>(
                 OBJECTIVE_PREFIX + RandomString.generate(3),
-                textProvider.fromLegacyMessage(titleIterator.next()),
+                null,
                 textProvider);
+        this.lineTemplates = new LineTemplates(objective.getName());
 
         setTitleIter(titleIterator);
     }
@@ -71,7 +172,9 @@ public class Board<R, P> {
     Board(@NonNull ThrowingFunction<P, R, Throwable> titleFunction, @NonNull Plugin plugin,
           @NonNull TextProvider<R> textProvider, ThrowingFunction<Player, P, Throwable> playerFunction) {
         this.plugin = plugin;
-        this.foliaLib = new FoliaLib(plugin);
+        this.scheduler = BoardScheduler.of(plugin);
+        this.foliaLib = scheduler.getFoliaLib();
+        ChannelInjector.IMP.registerListener(plugin);
         this.textProvider = textProvider;
         this.playerFunction = playerFunction;
         this.titleFunction = titleFunction;
@@ -79,14 +182,24 @@ public class Board<R, P> {
                 OBJECTIVE_PREFIX + RandomString.generate(3),
                 null,
                 textProvider);
+        this.lineTemplates = new LineTemplates(objective.getName());
     }
 
     public static <R, P> Builder<R, P> builder() {
         return new Builder<>();
     }
 
+    /**
+     * Creates global line updater which shows the current frame of the animation. The animation is advanced
+     * by the animation clock of the plugin once per tick, independently of the line updates, while a line
+     * of this board uses the updater.
+     *
+     * @param iterator - text iterator
+     * @return line updater
+     * @see BoardLine#isGlobal()
+     */
     public ThrowingFunction<Player, R, Throwable> toLineUpdater(@NonNull TextIterator iterator) {
-        return player -> textProvider.fromLegacyMessage(iterator.next());
+        return new AnimatedLineUpdater<>(this, iterator, false);
     }
 
     public void setTitle(@NonNull R title) {
@@ -94,7 +207,7 @@ public class Board<R, P> {
         this.titleFunction = null;
 
         objective.setDisplayName(title);
-        broadcast(objective::updateValue);
+        broadcastTitle();
     }
 
     public void setTitle(@NonNull TextIterator iterator) {
@@ -105,41 +218,155 @@ public class Board<R, P> {
         cancelTitleUpdater();
         this.titleFunction = titleFunction;
 
-        broadcastWithConversion((bukkitPlayer, customPlayer) -> {
+        broadcastWithConversion((bukkitPlayer, customPlayer, viewer) -> {
             R title = titleFunction.apply(customPlayer);
             objective.updateValue(bukkitPlayer, title);
         });
     }
 
     private void cancelTitleUpdater() {
-        if (titleUpdater != null) {
-            titleUpdater.cancel();
-            titleUpdater = null;
+        if (titleAnimation != null) {
+            titleAnimation.removeListener(titleListener);
+            unregisterAnimation(titleAnimation.getIterator());
         }
 
-        this.titleText = null;
+        this.titleAnimation = null;
+        this.titleListener = null;
     }
 
     private void setTitleIter(@NonNull TextIterator iterator) {
         cancelTitleUpdater();
         this.titleFunction = null;
 
-        this.titleText = iterator;
-        this.titleUpdater = foliaLib.getScheduler().runTimerAsync(() -> {
-            String next = titleText.next();
+        AnimationClock.Animation animation = registerAnimation(iterator);
+        Consumer<String> listener = frame -> titleChanged = true;
+
+        this.titleAnimation = animation;
+        this.titleListener = listener;
+
+        objective.setDisplayFrame(animation.getFrame());
+        broadcastTitle();
+        animation.addListener(listener);
+    }
+
+    synchronized AnimationClock.Animation registerAnimation(@NonNull TextIterator iterator) {
+        if (animationTask == null) {
+            animationTask = schedule(BoardTask.Type.ANIMATIONS, null, 1, 1, true, false);
+        }
+
+        animations.add(iterator);
+        return scheduler.getAnimationClock().register(iterator);
+    }
+
+    synchronized void unregisterAnimation(@NonNull Iterator<String> iterator) {
+        for (int i = 0; i < animations.size(); i++) {
+            // the clock counts registrations by identity
+            if (animations.get(i) == iterator) {
+                animations.remove(i);
+                scheduler.getAnimationClock().unregister(iterator);
+                break;
+            }
+        }
+
+        if (animations.isEmpty() && animationTask != null) {
+            animationTask.cancel();
+            animationTask = null;
+        }
+    }
+
+    private synchronized void unregisterAnimations() {
+        while (!animations.isEmpty()) {
+            unregisterAnimation(animations.get(animations.size() - 1));
+        }
+    }
+
+    /**
+     * Sends the frames which the animation clock changed since the previous animation task.
+     */
+    private void updateAnimations() {
+        AnimationClock.Animation titleAnimation = this.titleAnimation;
+
+        if (titleAnimation != null && titleChanged) {
+            titleChanged = false;
+            objective.setDisplayFrame(titleAnimation.getFrame());
+            broadcastTitle();
+        }
+
+        BoardLayout<R, P> layout = this.layout;
+
+        for (int i = 0; i < layout.size(); i++) {
+            BoardLine<R, P> line = layout.line(i);
+
+            // the line is sent with its first update
+            if (line.animationChanged && layout.score(i) != -1) {
+                line.animationChanged = false;
+                updateLine(line);
+            }
+        }
+    }
+
+    private PacketBatch openBatch() {
+        return PacketBatch.begin(batchPackets, bundleUpdates, eventLoopEncoding);
+    }
 
-            objective.setDisplayName(textProvider.fromLegacyMessage(next));
-            broadcast(objective::updateValue);
-        }, 0, 1);
+    BoardTask schedule(BoardTask.Type type, @Nullable BoardLine<R, P> line, long delay, long period,
+                       boolean async, boolean staggered) {
+        BoardTask task = scheduler.schedule(this, type, line, delay, period, async, staggered);
+        scheduledTasks.add(task);
+        return task;
     }
 
-    public void shiftLine(BoardLine<R, P> line, int offset) {
-        synchronized (lines) {
-            lines.remove(line);
-            lines.add(offset, line);
+    /**
+     * Runs tasks of this board which are due in the same tick, all their packets are sent together.
+     */
+    @SuppressWarnings("unchecked")
+    void runCycle(List<BoardTask> tasks, long tick) {
+        // refresh of all lines for all viewers makes other line updates redundant
+        boolean allLines = false;
+
+        for (BoardTask task : tasks) {
+            allLines |= task.getType() == BoardTask.Type.ALL_LINES && !task.isStaggered() && !task.isCancelled();
+        }
+
+        try (PacketBatch ignored = openBatch()) {
+            for (BoardTask task : tasks) {
+                if (task.isCancelled()) {
+                    continue;
+                }
+
+                if (task.getType() == BoardTask.Type.ADMISSION) {
+                    admitViewers();
+                    continue;
+                }
+
+                if (task.getType() == BoardTask.Type.ANIMATIONS) {
+                    updateAnimations();
+                } else if (allLines) {
+                    continue;
+                }
+
+                if (task.getType() == BoardTask.Type.ALL_LINES) {
+                    updateAllLines(Collections.emptyList(), task.slice(tick));
+                } else if (task.getType() == BoardTask.Type.LINE) {
+                    updateLine((BoardLine<R, P>) task.getLine(), task.slice(tick));
+                }
+            }
+
+            if (allLines) {
+                // lines which are due anyway are updated by the same pass
+                updateAllLines(tasks, null);
+            }
         }
+    }
+
+    public void shiftLine(@NonNull BoardLine<R, P> line, int offset) {
+        relayOut(layout -> {
+            int position = layout.indexOf(line);
+            Preconditions.checkArgument(position != -1, "Line %s is not a part of this packetboard", line);
+            Preconditions.checkPositionIndex(offset, layout.size() - 1);
 
-        updateAllLines();
+            return layout.move(position, offset);
+        }, false, Collections.emptyList(), null);
     }
 
     public WrappedTask bindWrappedTask(@NonNull WrappedTask task) {
@@ -147,16 +374,25 @@ public class Board<R, P> {
         return task;
     }
 
-    public WrappedTask updateLinesPeriodically(long delay, long period) {
+    public BoardTask updateLinesPeriodically(long delay, long period) {
         return updateLinesPeriodically(delay, period, true);
     }
 
-    public WrappedTask updateLinesPeriodically(long delay, long period, boolean async) {
-        return async ?
-                bindWrappedTask(foliaLib.getScheduler()
-                        .runTimerAsync(this::updateAllLines, delay, period)) :
-                bindWrappedTask(foliaLib.getScheduler()
-                        .runTimer(this::updateAllLines, delay, period));
+    public BoardTask updateLinesPeriodically(long delay, long period, boolean async) {
+        return updateLinesPeriodically(delay, period, async, staggerUpdates);
+    }
+
+    /**
+     * Updates all lines periodically.
+     *
+     * @param delay     - delay before the first update in ticks
+     * @param period    - period in ticks
+     * @param async     - whether lines are updated asynchronously
+     * @param staggered - whether viewers are spread over the period, see {@link #isStaggerUpdates()}
+     * @return update task
+     */
+    public BoardTask updateLinesPeriodically(long delay, long period, boolean async, boolean staggered) {
+        return schedule(BoardTask.Type.ALL_LINES, null, delay, period, async, staggered);
     }
 
     public BoardLine<R, P> addConditionalLine(@NonNull ThrowingFunction<P, R, Throwable> updater,
@@ -173,11 +409,34 @@ public class Board<R, P> {
     }
 
     public BoardLine<R, P> addUpdatableLine(ThrowingSupplier<R, Throwable> updater) {
-        return addUpdatableLine(player -> updater.get());
+        return addGlobalLine(updater);
+    }
+
+    /**
+     * Adds line whose text doesn't depend on the player. Updater is called once per update
+     * and the rendered text is shared between all viewers.
+     *
+     * @param updater - updater function
+     * @return new line
+     * @see BoardLine#isGlobal()
+     */
+    public BoardLine<R, P> addGlobalLine(@NonNull ThrowingSupplier<R, Throwable> updater) {
+        return addLine(new GlobalLineUpdater<>(updater), false, x -> true);
+    }
+
+    /**
+     * Adds global line which shows the animation. The animation is advanced once per tick
+     * and the line is sent to viewers only when the frame changes.
+     *
+     * @param iterator - animation
+     * @return new line
+     */
+    public BoardLine<R, P> addAnimatedLine(@NonNull TextIterator iterator) {
+        return addLine(new AnimatedLineUpdater<>(this, iterator, true), false, x -> true);
     }
 
     public BoardLine<R, P> addLine(@NonNull R text) {
-        return addLine(x -> text, true, x -> true);
+        return addLine(new GlobalLineUpdater<>(() -> text), true, x -> true);
     }
 
     public BoardLine<R, P> addBlankLine() {
@@ -186,153 +445,551 @@ public class Board<R, P> {
 
     private BoardLine<R, P> addLine(@NonNull ThrowingFunction<P, R, Throwable> updater, boolean staticText,
                                     @NonNull ThrowingPredicate<P, Throwable> predicate) {
-        synchronized (lines) {
+        BoardLine<R, P> line;
+
+        synchronized (layoutLock) {
+            BoardLayout<R, P> layout = this.layout;
+
             Preconditions.checkArgument(
-                    lines.size() <= MAX_LINES_COUNT, "Cannot add more than %s lines to a packetboard", MAX_LINES_COUNT);
+                    layout.size() <= MAX_LINES_COUNT, "Cannot add more than %s lines to a packetboard", MAX_LINES_COUNT);
 
-            BoardLine<R, P> line = new BoardLine<>(
-                    updater, objective.getName() + lines.size(),
-                    staticText, lines.size(), textProvider, predicate);
+            // index of a removed line is reused, so teams and entries of the lines never collide
+            int index = layout.freeIndex();
+            line = new BoardLine<>(
+                    updater, lineTemplates,
+                    staticText, index, textProvider, predicate);
 
-            lines.add(line);
-            return line;
+            this.layout = layout.add(line);
         }
+
+        line.bindUpdater();
+        return line;
     }
 
     public void removeLine(@NonNull BoardLine<R, P> line) {
-        synchronized (lines) {
-            if (lines.remove(line) && line.getScore() != -1) {
-                broadcast(p -> line.removeTeam(p, objective.getName()));
-                updateAllLines();
+        line.remove();
+
+        if (line.updateTask != null) {
+            line.updateTask.cancel();
+        }
+
+        synchronized (layoutLock) {
+            int position = layout.indexOf(line);
+            if (position == -1) {
+                return;
+            }
+
+            if (layout.score(position) == -1) {
+                // the line wasn't sent yet
+                this.layout = layout.remove(position);
+                return;
             }
         }
+
+        relayOut(layout -> {
+            int position = layout.indexOf(line);
+            return position == -1 ? layout : layout.remove(position);
+        }, false, Collections.emptyList(), null);
     }
 
     public Optional<BoardLine<R, P>> maxLine() {
-        synchronized (lines) {
-            return lines.stream()
-                    .filter(line -> line.getScore() != -1)
-                    .max(Comparator.comparingInt(BoardLine::getScore));
+        BoardLayout<R, P> layout = this.layout;
+
+        // the first laid out line has the highest score
+        for (int i = 0; i < layout.size(); i++) {
+            if (layout.score(i) != -1) {
+                return Optional.of(layout.line(i));
+            }
         }
+
+        return Optional.empty();
     }
 
     public Optional<BoardLine<R, P>> minLine() {
-        synchronized (lines) {
-            return lines.stream()
-                    .filter(line -> line.getScore() != -1)
-                    .min(Comparator.comparingInt(BoardLine::getScore));
+        BoardLayout<R, P> layout = this.layout;
+
+        for (int i = layout.size() - 1; i >= 0; i--) {
+            if (layout.score(i) != -1) {
+                return Optional.of(layout.line(i));
+            }
         }
+
+        return Optional.empty();
     }
 
     public void updateLine(@NonNull BoardLine<R, P> line) {
-        synchronized (lines) {
-            Preconditions.checkArgument(lines.contains(line), "Line %s is not a part of this packetboard", line);
+        updateLine(line, null);
+    }
 
-            broadcastWithConversion((bukkitPlayer, customPlayer) ->
-                    line.updateTeam(bukkitPlayer, customPlayer, objective.getName()));
-        }
+    private void updateLine(BoardLine<R, P> line, @Nullable Predicate<ViewerState> filter) {
+        Preconditions.checkArgument(layout.indexOf(line) != -1, "Line %s is not a part of this packetboard", line);
+
+        PacketFanout fanout = new PacketFanout();
+
+        broadcastWithConversion(filter, fanout, (bukkitPlayer, customPlayer, viewer) -> {
+            synchronized (viewer) {
+                // the line is sent where the viewer has it, which may differ from the current layout
+                BoardLayout<R, P> layout = layout(viewer);
+                int position = layout.indexOf(line);
+
+                if (position != -1 && layout.score(position) != -1) {
+                    line.updateTeam(bukkitPlayer, customPlayer, slot(layout, position), layout.score(position),
+                            viewer, fanout);
+                }
+            }
+        });
     }
 
     public void updateAllLines() {
-        synchronized (lines) {
-            int index = lines.size();
-
-            for (BoardLine<R, P> line : lines) {
-                if (line.getScore() == -1) {
-                    line.setScore(index--);
-                    broadcastWithConversion((bukkitPlayer, customPlayer) ->
-                            line.createTeam(bukkitPlayer, customPlayer, objective.getName()));
+        updateAllLines(Collections.emptyList(), null);
+    }
+
+    private void updateAllLines(List<BoardTask> dueTasks, @Nullable Predicate<ViewerState> filter) {
+        relayOut(null, true, dueTasks, filter);
+    }
+
+    /**
+     * Edits and lays out the lines, then sends only the difference: new lines are created, removed ones
+     * are removed, and moved lines get only their scores, or in {@link #isStableOrdering() stable mode}
+     * texts of the positions whose line has changed.
+     *
+     * @param edit     - edit of the layout, null to lay out new lines only
+     * @param refresh  - whether texts of all lines are rendered again too
+     * @param dueTasks - line tasks which are due in this cycle, their lines are refreshed as well
+     * @param filter   - viewers to refresh, ignored if the layout has changed
+     */
+    private void relayOut(@Nullable UnaryOperator<BoardLayout<R, P>> edit, boolean refresh,
+                          List<BoardTask> dueTasks, @Nullable Predicate<ViewerState> filter) {
+        BoardLayout<R, P> shown;
+        BoardLayout<R, P> layout;
+
+        synchronized (layoutLock) {
+            shown = this.layout;
+            layout = (edit != null ? edit.apply(shown) : shown).layOut(stableOrdering);
+            this.layout = layout;
+
+            for (int i = 0; i < shown.size(); i++) {
+                if (layout.indexOf(shown.line(i)) == -1) {
+                    shown.line(i).setScore(-1);
+                }
+            }
+
+            for (int i = 0; i < layout.size(); i++) {
+                layout.line(i).setScore(layout.score(i));
+            }
+        }
+
+        if (layout == shown && !refresh) {
+            return;
+        }
+
+        if (layout != shown) {
+            // the layout must change for everyone at once
+            filter = null;
+        }
+
+        PacketFanout fanout = new PacketFanout();
+
+        broadcastWithConversion(filter, fanout, (bukkitPlayer, customPlayer, viewer) ->
+                applyLayout(bukkitPlayer, customPlayer, viewer, refresh, dueTasks, fanout));
+    }
+
+    /**
+     * Sends the viewer the difference between the layout which it has applied and the current one.
+     * Diffs of a viewer are applied one at a time, so a broadcast which comes late, e.g. from another thread,
+     * finds the viewer up to date and never sends lines which are removed already.
+     */
+    private void applyLayout(Player bukkitPlayer, P customPlayer, ViewerState viewer, boolean refresh,
+                             List<BoardTask> dueTasks, @Nullable PacketFanout fanout) throws Throwable {
+        synchronized (viewer) {
+            BoardLayout<R, P> shown = layout(viewer);
+            BoardLayout<R, P> layout = this.layout;
+
+            for (int i = 0; i < shown.size(); i++) {
+                boolean removed = stableOrdering
+                        ? i >= layout.size() || layout.score(i) == -1
+                        : layout.indexOf(shown.line(i)) == -1;
+
+                if (shown.score(i) != -1 && removed) {
+                    shown.line(i).removeTeam(bukkitPlayer, slot(shown, i), viewer, fanout);
+                }
+            }
+
+            for (int i = 0; i < layout.size(); i++) {
+                BoardLine<R, P> line = layout.line(i);
+                int slot = slot(layout, i);
+                int score = layout.score(i);
+
+                if (score == -1) {
+                    // added after the layout was published, sent with the next one
                     continue;
                 }
 
-                if (line.updateTask != null && !line.updateTask.isCancelled()) {
+                // text of a line with its own task is updated by the task
+                boolean render = refresh
+                        && (line.updateTask == null || line.updateTask.isCancelled() || isDue(line, dueTasks));
+
+                if (stableOrdering) {
+                    BoardLine<R, P> previous = i < shown.size() && shown.score(i) != -1 ? shown.line(i) : null;
+
+                    if (previous == null) {
+                        line.createTeam(bukkitPlayer, customPlayer, slot, score, viewer, fanout);
+                    } else if (previous != line || render) {
+                        line.updateTeam(bukkitPlayer, customPlayer, slot, score, viewer, fanout);
+                    }
                     continue;
                 }
 
-                line.setScore(index--);
+                int position = shown.indexOf(line);
 
-                broadcastWithConversion((bukkitPlayer, customPlayer) ->
-                        line.updateTeam(bukkitPlayer, customPlayer, objective.getName()));
+                if (position == -1 || shown.score(position) == -1) {
+                    line.createTeam(bukkitPlayer, customPlayer, slot, score, viewer, fanout);
+                } else if (render) {
+                    line.updateTeam(bukkitPlayer, customPlayer, slot, score, viewer, fanout);
+                } else {
+                    line.updateScore(bukkitPlayer, customPlayer, slot, score, viewer, fanout);
+                }
             }
+
+            viewer.layout = layout;
         }
     }
 
-    public void removeViewers() {
-        synchronized (viewers) {
-            for (Iterator<UUID> iterator = viewers.iterator(); iterator.hasNext(); ) {
-                UUID uuid = iterator.next();
-                Player player = Bukkit.getPlayer(uuid);
+    /**
+     * Returns the layout which the viewer has applied.
+     */
+    @SuppressWarnings("unchecked")
+    private BoardLayout<R, P> layout(ViewerState viewer) {
+        // a viewer state belongs to a single board
+        return (BoardLayout<R, P>) viewer.layout;
+    }
 
-                if (player != null) {
-                    removeViewer0(player);
-                }
+    /**
+     * Returns the slot, i.e. the team and the score entry, which displays the line at the position.
+     */
+    private int slot(BoardLayout<R, P> layout, int position) {
+        return stableOrdering ? position : layout.line(position).getIndex();
+    }
 
-                iterator.remove();
+    private static boolean isDue(BoardLine<?, ?> line, List<BoardTask> dueTasks) {
+        for (BoardTask task : dueTasks) {
+            if (task.getLine() == line) {
+                return true;
             }
         }
+
+        return false;
+    }
+
+    public void removeViewers() {
+        viewers.forEach(viewer -> {
+            // the viewer could be removed concurrently
+            if (viewers.remove(viewer.getSession().getUniqueId()) == viewer && viewer.getSession().isActive()) {
+                removeViewer0(viewer.getPlayer(), viewer);
+            }
+        });
     }
 
     public void destroy() {
         cancelTitleUpdater();
+        unregisterAnimations();
 
         for (WrappedTask task : tasks) {
             foliaLib.getScheduler().cancelTask(task);
         }
 
+        for (BoardTask task : scheduledTasks) {
+            task.cancel();
+        }
+
+        for (PendingViewer pending : admissionQueue.drain()) {
+            pending.fail(new IllegalStateException("Packetboard is destroyed"));
+        }
+
         removeViewers();
 
-        synchronized (lines) {
-            lines.clear();
+        BoardLayout<R, P> layout;
+
+        synchronized (layoutLock) {
+            layout = this.layout;
+            this.layout = BoardLayout.empty();
+        }
+
+        for (BoardLine<R, P> line : layout.asList()) {
+            line.remove();
         }
 
         tasks.clear();
+        animationTask = null;
+    }
+
+    /**
+     * Returns the variant of the score entries of this board.
+     *
+     * @see #setEntryVariant(int)
+     */
+    public int getEntryVariant() {
+        return lineTemplates.getEntryVariant();
+    }
+
+    /**
+     * Sets the variant of the score entries of this board. A client can hold the teams of several boards
+     * at once, e.g. all pages of a pager, only if their variants differ. Can be changed only while
+     * the board has no viewers. 0 by default.
+     *
+     * @param entryVariant - entry variant, not negative
+     */
+    public void setEntryVariant(int entryVariant) {
+        Preconditions.checkArgument(entryVariant >= 0, "Entry variant cannot be negative");
+
+        Preconditions.checkState(viewers.getIds().isEmpty(), "Board has viewers");
+        lineTemplates.setEntryVariant(entryVariant);
     }
 
-    @SneakyThrows
     public void addViewer(@NonNull Player player) {
-        if (!viewers.contains(player.getUniqueId())) {
-            P customPlayer = convertPlayer(player);
+        addViewer(player, true);
+    }
+
+    /**
+     * Adds the viewer, optionally without showing the board in the sidebar. A hidden board is still created
+     * and updated on the client, so {@link #display} shows it later with a single packet.
+     *
+     * @param player  - player
+     * @param display - whether to show the board in the sidebar
+     */
+    @SneakyThrows
+    public void addViewer(@NonNull Player player, boolean display) {
+        ViewerState viewer;
+
+        try (PacketBatch ignored = openBatch()) {
+            viewer = addViewer0(player, display, null);
+        }
+
+        if (viewer != null) {
+            markReady(viewer);
+        }
+    }
+
+    /**
+     * Adds the viewers in one batch. Payloads which don't depend on the player, such as texts of global lines
+     * and the title, are encoded once per client profile for all of them. A viewer which fails is logged
+     * and skipped.
+     *
+     * @param players - players
+     */
+    public void addViewers(@NonNull Collection<? extends Player> players) {
+        List<PendingViewer> pending = new ArrayList<>(players.size());
+
+        for (Player player : players) {
+            pending.add(new PendingViewer(player, null));
+        }
+
+        addViewers(pending, false);
+    }
+
+    /**
+     * Queues the viewer to be added by the scheduler of the board off the calling thread, at most
+     * {@link #getAdmissionRate()} viewers per tick. Viewers admitted in the same tick are added together,
+     * see {@link #addViewers}, in {@link #isRegionRendering() region mode} each by its region thread.
+     *
+     * @param player - player
+     * @return future completed once the board is sent, or exceptionally if it couldn't be
+     */
+    public CompletableFuture<Void> addViewerAsync(@NonNull Player player) {
+        PendingViewer pending = new PendingViewer(player, new CompletableFuture<>());
+        admissionQueue.add(pending);
+        return pending.future;
+    }
+
+    private void admitViewers() {
+        List<PendingViewer> admitted = admissionQueue.poll(admissionRate);
+
+        if (!admitted.isEmpty()) {
+            addViewers(admitted, regionRendering && foliaLib.isFolia());
+        }
+    }
+
+    private void addViewers(List<PendingViewer> pending, boolean regionThreads) {
+        PacketFanout fanout = new PacketFanout();
+        List<CompletableFuture<?>> regionTasks = regionThreads ? new ArrayList<>() : null;
+
+        try (PacketBatch ignored = openBatch()) {
+            for (PendingViewer viewer : pending) {
+                if (regionTasks == null) {
+                    viewer.state = admit(viewer, fanout);
+                    continue;
+                }
+
+                regionTasks.add(foliaLib.getScheduler().runAtEntity(viewer.player, task -> {
+                    // the region thread only collects values, packets are encoded by the event loop
+                    try (PacketBatch regionBatch = PacketBatch.begin(batchPackets, bundleUpdates, true)) {
+                        viewer.state = admit(viewer, fanout);
+                    } catch (Throwable throwable) {
+                        viewer.fail(throwable);
+                    }
+
+                    // a failed future stays failed
+                    viewer.complete();
+                }).whenComplete((result, throwable) -> {
+                    if (throwable != null) {
+                        viewer.fail(throwable);
+                    } else if (result != EntityTaskResult.SUCCESS) {
+                        // the task didn't run, the player has left
+                        viewer.fail(new IllegalStateException("Player is not available"));
+                    }
+                }));
+            }
+        } finally {
+            if (regionTasks == null || regionTasks.isEmpty()) {
+                fanout.release();
+            } else {
+                CompletableFuture.allOf(regionTasks.toArray(new CompletableFuture<?>[0]))
+                        .whenComplete((result, throwable) -> fanout.release());
+            }
+        }
+
+        if (regionTasks == null) {
+            pending.forEach(PendingViewer::complete);
+        }
+    }
+
+    @Nullable
+    private ViewerState admit(PendingViewer viewer, PacketFanout fanout) {
+        if (!viewer.player.isOnline()) {
+            viewer.fail(new IllegalStateException("Player is offline"));
+            return null;
+        }
+
+        try {
+            return addViewer0(viewer.player, true, fanout);
+        } catch (Throwable throwable) {
+            viewer.fail(throwable);
+            return null;
+        }
+    }
+
+    /**
+     * Sends the board to the player in the current batch. The viewer must be marked ready
+     * once the batch is closed.
+     *
+     * @return added viewer, null if the player is a viewer already
+     */
+    @Nullable
+    private ViewerState addViewer0(@NonNull Player player, boolean display,
+                                   @Nullable PacketFanout fanout) throws Throwable {
+        UUID uniqueId = player.getUniqueId();
+
+        if (viewers.contains(uniqueId)) {
+            return null;
+        }
+
+        P customPlayer = convertPlayer(player);
+        ViewerState viewer = new ViewerState(player, ChannelInjector.IMP.getSession(player));
+
+        // reserve the viewer, broadcasts skip it until the board is sent
+        if (!viewers.add(viewer)) {
+            return null;
+        }
 
+        try {
             if (titleFunction != null) {
                 R title = titleFunction.apply(customPlayer);
                 objective.create(player, title);
             } else {
-                objective.create(player);
+                objective.createShared(player, fanout);
             }
 
-            synchronized (lines) {
-                for (BoardLine<R, P> line : lines) {
-                    line.createTeam(player, customPlayer, objective.getName());
+            synchronized (viewer) {
+                BoardLayout<R, P> layout = this.layout;
+
+                // lines which aren't laid out yet are created by the next update
+                for (int i = 0; i < layout.size(); i++) {
+                    if (layout.score(i) != -1) {
+                        layout.line(i).createTeam(player, customPlayer, slot(layout, i), layout.score(i), viewer,
+                                fanout);
+                    }
                 }
+
+                viewer.layout = layout;
             }
 
-            objective.display(player);
+            if (display) {
+                objective.display(player);
+            }
+        } catch (Throwable throwable) {
+            viewers.remove(uniqueId);
+            throw throwable;
+        }
+
+        return viewer;
+    }
 
-            viewers.add(player.getUniqueId());
+    /**
+     * Lets broadcasts reach the viewer once its board is sent, and sends the layout changes which
+     * the broadcasts skipped while the viewer was being added.
+     */
+    private void markReady(ViewerState viewer) {
+        viewer.markReady();
+
+        // a re-layout either sees the viewer ready or publishes its layout before this check
+        Player bukkitPlayer = viewer.layout != layout ? readyPlayer(viewer) : null;
+
+        if (bukkitPlayer != null) {
+            try (PacketBatch ignored = openBatch()) {
+                render(bukkitPlayer, true, viewer, (player, customPlayer, state) ->
+                        applyLayout(player, customPlayer, state, false, Collections.emptyList(), null));
+            }
+        }
+    }
+
+    /**
+     * Shows the board of the viewer in the sidebar, replacing whatever was shown there.
+     * Sends only the display packet, the board must be added to the viewer already.
+     *
+     * @param player - viewer
+     */
+    public void display(@NonNull Player player) {
+        ViewerState viewer = viewers.get(player.getUniqueId());
+
+        if (viewer != null && viewer.getSession().isActive()) {
+            objective.display(player);
         }
     }
 
     public void removeViewer(@NonNull Player player) {
-        synchronized (viewers) {
-            if (viewers.remove(player.getUniqueId())) {
-                removeViewer0(player);
-            }
+        ViewerState viewer = viewers.remove(player.getUniqueId());
+
+        if (viewer != null) {
+            removeViewer0(player, viewer);
         }
     }
 
-    private void removeViewer0(@NonNull Player player) {
-        lines.forEach(line -> line.removeTeam(player, objective.getName()));
-        objective.remove(player);
+    private void removeViewer0(@NonNull Player player, @NonNull ViewerState viewer) {
+        try (PacketBatch ignored = openBatch()) {
+            synchronized (viewer) {
+                BoardLayout<R, P> layout = layout(viewer);
+
+                for (int i = 0; i < layout.size(); i++) {
+                    if (layout.score(i) != -1) {
+                        layout.line(i).removeTeam(player, slot(layout, i), viewer, null);
+                    }
+                }
+            }
+            objective.remove(player);
+        }
     }
 
     public Set<UUID> getViewers() {
-        return Collections.unmodifiableSet(viewers);
+        return viewers.getIds();
+    }
+
+    @Nullable
+    ViewerState getViewer(@NonNull UUID uniqueId) {
+        return viewers.get(uniqueId);
     }
 
     public List<BoardLine<R, P>> getLines() {
-        synchronized (lines) {
-            return Collections.unmodifiableList(lines);
-        }
+        return layout.asList();
     }
 
     @SuppressWarnings("unchecked")
@@ -340,50 +997,138 @@ public class Board<R, P> {
         return playerFunction != null ? playerFunction.apply(player) : (P) player;
     }
 
-    private void broadcast(@NonNull ThrowingConsumer<Player, Throwable> consumer) {
-        synchronized (viewers) {
-            viewers.removeIf(uuid -> Bukkit.getPlayer(uuid) == null);
+    private void broadcastTitle() {
+        PacketFanout fanout = new PacketFanout();
+        broadcast(fanout, player -> objective.updateSharedValue(player, fanout));
+    }
 
-            for (UUID id : viewers) {
-                Player player = Bukkit.getPlayer(id);
-                if (player == null) {
-                    continue;
+    /**
+     * Returns the player of the viewer if the board can be sent to it, viewers who lost connection are dropped.
+     */
+    @Nullable
+    private Player readyPlayer(@NonNull ViewerState viewer) {
+        if (!viewer.isReady()) {
+            return null;
+        }
+
+        if (!viewer.getSession().isActive()) {
+            viewers.remove(viewer.getSession().getUniqueId());
+            return null;
+        }
+
+        return viewer.getPlayer();
+    }
+
+    private void broadcast(@Nullable PacketFanout fanout, @NonNull ThrowingConsumer<Player, Throwable> consumer) {
+        forEachViewer(null, false, fanout, (bukkitPlayer, customPlayer, viewer) -> consumer.accept(bukkitPlayer));
+    }
+
+    private void broadcastWithConversion(@NonNull ViewerConsumer<P> consumer) {
+        broadcastWithConversion(null, null, consumer);
+    }
+
+    private void broadcastWithConversion(@Nullable Predicate<ViewerState> filter, @Nullable PacketFanout fanout,
+                                         @NonNull ViewerConsumer<P> consumer) {
+        forEachViewer(filter, true, fanout, consumer);
+    }
+
+    /**
+     * Renders the board for ready viewers and releases the fanout once all of them are rendered.
+     * In {@link #isRegionRendering() region mode} viewers are rendered by their region threads.
+     */
+    private void forEachViewer(@Nullable Predicate<ViewerState> filter, boolean convert, @Nullable PacketFanout fanout,
+                               @NonNull ViewerConsumer<P> consumer) {
+        List<CompletableFuture<?>> pending = regionRendering && foliaLib.isFolia() ? new ArrayList<>() : null;
+
+        try (PacketBatch ignored = openBatch()) {
+            viewers.forEach(viewer -> {
+                if (filter != null && !filter.test(viewer)) {
+                    return;
                 }
 
-                try {
-                    consumer.accept(player);
-                } catch (Throwable e) {
-                    throw new RuntimeException("An error occurred while updating packetboard for player: " + player.getName(),
-                            e);
+                Player bukkitPlayer = readyPlayer(viewer);
+                if (bukkitPlayer == null) {
+                    return;
+                }
+
+                if (pending != null && !foliaLib.getScheduler().isOwnedByCurrentRegion(bukkitPlayer)) {
+                    pending.add(foliaLib.getScheduler().runAtEntity(bukkitPlayer, task -> {
+                        // the region thread only collects values, packets are encoded by the event loop
+                        try (PacketBatch regionBatch = PacketBatch.begin(batchPackets, bundleUpdates, true)) {
+                            render(bukkitPlayer, convert, viewer, consumer);
+                        } catch (RuntimeException e) {
+                            plugin.getLogger().log(Level.SEVERE, e.getMessage(), e.getCause());
+                        }
+                    }));
+                    return;
+                }
+
+                render(bukkitPlayer, convert, viewer, consumer);
+            });
+        } finally {
+            if (fanout != null) {
+                if (pending == null || pending.isEmpty()) {
+                    fanout.release();
+                } else {
+                    CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0]))
+                            .whenComplete((result, throwable) -> fanout.release());
                 }
             }
         }
     }
 
-    private void broadcastWithConversion(@NonNull BiThrowingConsumer<Player, P> consumer) {
-        synchronized (viewers) {
-            viewers.removeIf(uuid -> Bukkit.getPlayer(uuid) == null);
+    private void render(Player bukkitPlayer, boolean convert, ViewerState viewer, ViewerConsumer<P> consumer) {
+        try {
+            P customPlayer = convert ? convertPlayer(bukkitPlayer) : null;
+            consumer.accept(bukkitPlayer, customPlayer, viewer);
+        } catch (Throwable e) {
+            throw new RuntimeException("An error occurred while updating packetboard for player: " + bukkitPlayer.getName(),
+                    e);
+        }
+    }
 
-            for (UUID id : viewers) {
-                Player bukkitPlayer = Bukkit.getPlayer(id);
-                if (bukkitPlayer == null) {
-                    continue;
-                }
+    /**
+     * Player waiting to be added, the future is null if errors are logged instead.
+     */
+    private final class PendingViewer {
+        final Player player;
+        @Nullable
+        final CompletableFuture<Void> future;
+        ViewerState state;
+
+        PendingViewer(Player player, @Nullable CompletableFuture<Void> future) {
+            this.player = player;
+            this.future = future;
+        }
 
+        void complete() {
+            if (state != null) {
                 try {
-                    P customPlayer = convertPlayer(bukkitPlayer);
-                    consumer.accept(bukkitPlayer, customPlayer);
-                } catch (Throwable e) {
-                    throw new RuntimeException("An error occurred while updating packetboard for player: " + bukkitPlayer.getName(),
-                            e);
+                    markReady(state);
+                } catch (RuntimeException exception) {
+                    // the board is sent, the next update brings the viewer up to date
+                    plugin.getLogger().log(Level.SEVERE, exception.getMessage(), exception.getCause());
                 }
             }
+
+            if (future != null) {
+                future.complete(null);
+            }
+        }
+
+        void fail(Throwable throwable) {
+            if (future == null) {
+                plugin.getLogger().log(Level.SEVERE,
+                        "An error occurred while adding packetboard viewer: " + player.getName(), throwable);
+            } else {
+                future.completeExceptionally(throwable);
+            }
         }
     }
 
     @FunctionalInterface
-    private interface BiThrowingConsumer<T, U> {
-        void accept(T t, U u) throws Throwable;
+    private interface ViewerConsumer<P> {
+        void accept(Player bukkitPlayer, P customPlayer, ViewerState viewer) throws Throwable;
     }
 
     @NoArgsConstructor(access = AccessLevel.PRIVATE)
@@ -395,6 +1140,13 @@ public class Board<R, P> {
         Plugin plugin;
         TextProvider<R> textProvider;
         ThrowingFunction<Player, P, Throwable> playerFunction;
+        boolean batchPackets = true;
+        boolean bundleUpdates;
+        boolean eventLoopEncoding;
+        boolean staggerUpdates;
+        boolean regionRendering;
+        boolean stableOrdering;
+        int admissionRate;
 
         public Builder<R, P> title(@NonNull R title) {
             this.title = title;
@@ -432,19 +1184,66 @@ public class Board<R, P> {
             return this;
         }
 
+        public Builder<R, P> batchPackets(boolean batchPackets) {
+            this.batchPackets = batchPackets;
+            return this;
+        }
+
+        public Builder<R, P> bundleUpdates(boolean bundleUpdates) {
+            this.bundleUpdates = bundleUpdates;
+            return this;
+        }
+
+        public Builder<R, P> eventLoopEncoding(boolean eventLoopEncoding) {
+            this.eventLoopEncoding = eventLoopEncoding;
+            return this;
+        }
+
+        public Builder<R, P> staggerUpdates(boolean staggerUpdates) {
+            this.staggerUpdates = staggerUpdates;
+            return this;
+        }
+
+        public Builder<R, P> regionRendering(boolean regionRendering) {
+            this.regionRendering = regionRendering;
+            return this;
+        }
+
+        public Builder<R, P> stableOrdering(boolean stableOrdering) {
+            this.stableOrdering = stableOrdering;
+            return this;
+        }
+
+        public Builder<R, P> admissionRate(int admissionRate) {
+            Preconditions.checkArgument(admissionRate >= 0, "Admission rate cannot be negative");
+            this.admissionRate = admissionRate;
+            return this;
+        }
+
         public Board<R, P> build() {
             Preconditions.checkNotNull(plugin, "Plugin cannot be null");
             Preconditions.checkNotNull(textProvider, "TextProvider cannot be null");
             Preconditions.checkArgument(title != null || titleIterator != null || titleFunction != null,
                     "Title, titleIterator, or titleFunction must be set");
 
+            Board<R, P> board;
+
             if (titleFunction != null) {
-                return new Board<>(titleFunction, plugin, textProvider, playerFunction);
+                board = new Board<>(titleFunction, plugin, textProvider, playerFunction);
+            } else {
+                board = titleIterator != null
+                        ? new Board<>(titleIterator, plugin, textProvider, playerFunction)
+                        : new Board<>(title, plugin, textProvider, playerFunction);
             }
 
-            return titleIterator != null
-                    ? new Board<>(titleIterator, plugin, textProvider, playerFunction)
-                    : new Board<>(title, plugin, textProvider, playerFunction);
+            board.setBatchPackets(batchPackets);
+            board.setBundleUpdates(bundleUpdates);
+            board.setEventLoopEncoding(eventLoopEncoding);
+            board.setStaggerUpdates(staggerUpdates);
+            board.setRegionRendering(regionRendering);
+            board.setStableOrdering(stableOrdering);
+            board.setAdmissionRate(admissionRate);
+            return board;
         }
     }
 }
\ No newline at end of file
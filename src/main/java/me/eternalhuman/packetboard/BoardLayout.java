@@ -0,0 +1,136 @@
+package me.eternalhuman.packetboard;
+
+import lombok.NonNull;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable snapshot of board lines in display order with their scores.
+ * <p>
+ * Every edit creates a new layout which the board swaps atomically, so updates read a consistent snapshot
+ * without locks. Score of a line is -1 until the line is laid out by {@link Board#updateAllLines()}.
+ * Lines which aren't laid out yet are always at the end.
+ */
+final class BoardLayout<R, P> {
+
+    private static final BoardLayout<?, ?> EMPTY = new BoardLayout<>(emptyLines(), new int[0]);
+
+    private final BoardLine<R, P>[] lines;
+    private final int[] scores;
+
+    private BoardLayout(BoardLine<R, P>[] lines, int[] scores) {
+        this.lines = lines;
+        this.scores = scores;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <R, P> BoardLayout<R, P> empty() {
+        return (BoardLayout<R, P>) EMPTY;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <R, P> BoardLine<R, P>[] emptyLines() {
+        // an empty array holds no lines of any type
+        return (BoardLine<R, P>[]) new BoardLine<?, ?>[0];
+    }
+
+    int size() {
+        return lines.length;
+    }
+
+    BoardLine<R, P> line(int position) {
+        return lines[position];
+    }
+
+    int score(int position) {
+        return scores[position];
+    }
+
+    int indexOf(@NonNull BoardLine<R, P> line) {
+        for (int i = 0; i < lines.length; i++) {
+            if (lines[i] == line) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the smallest line index which isn't used by any line of this layout.
+     */
+    int freeIndex() {
+        for (int index = 0; ; index++) {
+            boolean used = false;
+
+            for (BoardLine<R, P> line : lines) {
+                if (line.getIndex() == index) {
+                    used = true;
+                    break;
+                }
+            }
+
+            if (!used) {
+                return index;
+            }
+        }
+    }
+
+    BoardLayout<R, P> add(@NonNull BoardLine<R, P> line) {
+        BoardLine<R, P>[] lines = Arrays.copyOf(this.lines, this.lines.length + 1);
+        int[] scores = Arrays.copyOf(this.scores, this.scores.length + 1);
+
+        lines[lines.length - 1] = line;
+        scores[scores.length - 1] = -1;
+
+        return new BoardLayout<>(lines, scores);
+    }
+
+    BoardLayout<R, P> remove(int position) {
+        BoardLine<R, P>[] lines = Arrays.copyOf(this.lines, this.lines.length - 1);
+        int[] scores = Arrays.copyOf(this.scores, this.scores.length - 1);
+
+        System.arraycopy(this.lines, position + 1, lines, position, lines.length - position);
+        System.arraycopy(this.scores, position + 1, scores, position, scores.length - position);
+
+        return new BoardLayout<>(lines, scores);
+    }
+
+    BoardLayout<R, P> move(int position, int offset) {
+        BoardLayout<R, P> removed = remove(position);
+
+        BoardLine<R, P>[] lines = Arrays.copyOf(removed.lines, this.lines.length);
+        int[] scores = Arrays.copyOf(removed.scores, this.scores.length);
+
+        System.arraycopy(removed.lines, offset, lines, offset + 1, removed.lines.length - offset);
+        System.arraycopy(removed.scores, offset, scores, offset + 1, removed.scores.length - offset);
+        lines[offset] = this.lines[position];
+        scores[offset] = this.scores[position];
+
+        return new BoardLayout<>(lines, scores);
+    }
+
+    /**
+     * Assigns scores by display order: the first line gets the highest score and the last one gets 1.
+     * In stable ordering all lines get 0 and are ordered by their entries.
+     *
+     * @param stable - whether all lines get the same score
+     * @return laid out layout, or this layout if scores are already assigned
+     */
+    BoardLayout<R, P> layOut(boolean stable) {
+        int[] scores = new int[lines.length];
+
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] = stable ? 0 : scores.length - i;
+        }
+
+        return Arrays.equals(scores, this.scores) ? this : new BoardLayout<>(lines, scores);
+    }
+
+    List<BoardLine<R, P>> asList() {
+        // the array is never modified, so it can be exposed read-only
+        return Collections.unmodifiableList(Arrays.asList(lines));
+    }
+}
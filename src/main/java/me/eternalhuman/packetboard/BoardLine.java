@@ -2,47 +2,86 @@ package me.eternalhuman.packetboard;
 
 import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
-import com.tcoded.folialib.wrapper.task.WrappedTask;
 import io.netty.buffer.ByteBuf;
 import lombok.*;
 import me.eternalhuman.packetboard.protocol.ChannelInjector;
+import me.eternalhuman.packetboard.protocol.PacketBatch;
+import me.eternalhuman.packetboard.protocol.PacketFanout;
+import me.eternalhuman.packetboard.protocol.PacketTemplate;
+import me.eternalhuman.packetboard.protocol.ProtocolProfile;
 import me.eternalhuman.packetboard.protocol.ScoreNumberFormat;
 import me.eternalhuman.packetboard.protocol.ScoreboardPackets;
+import me.eternalhuman.packetboard.protocol.ViewerSession;
 import me.eternalhuman.packetboard.text.TextProvider;
 import me.eternalhuman.packetboard.util.lang.ThrowingFunction;
 import me.eternalhuman.packetboard.util.lang.ThrowingPredicate;
 import me.eternalhuman.packetboard.util.lang.ThrowingSupplier;
 import org.bukkit.entity.Player;
 
+import javax.annotation.Nullable;
+import java.util.function.Supplier;
+
 @Getter
 @ToString
 public class BoardLine<R, P> {
 
+    // kinds of values and packets shared through PacketFanout
+    private static final int VALUE = 0;
+    private static final int TEXT = 1;
+    private static final int EMPTY_TEXT = 2;
+    private static final int SCORE = 3;
+    private static final int RESET_SCORE = 4;
+    private static final int TEAM = 5; // + team mode
+    // packets of the kinds above are keyed by slot too, a line can be in two slots during a re-layout
+    private static final int SLOT_SHIFT = 4;
+
     private final String teamName;
 
+    // score of the last published layout, see BoardLayout
     @Setter(AccessLevel.PACKAGE)
-    private int score = -1;
+    private volatile int score = -1;
 
     private final int index;
     private final boolean staticText;
 
+    // invariant parts of the packets of every slot, shared by the lines of the board
+    @Getter(AccessLevel.NONE)
+    @ToString.Exclude
+    private final LineTemplates templates;
+
     // for internal use
-    WrappedTask updateTask;
+    BoardTask updateTask;
+    // set by the animation, the line is sent by the next animation task of the board
+    @Getter(AccessLevel.NONE)
+    volatile boolean animationChanged;
 
     private ThrowingFunction<P, R, Throwable> updater;
+    // set once the line is removed from its board, its updater is released then, guarded by this
+    @Getter(AccessLevel.NONE)
+    private boolean removed;
+    // not null for global lines, see isGlobal()
+    @Getter(AccessLevel.NONE)
+    @ToString.Exclude
+    private ThrowingSupplier<R, Throwable> globalUpdater;
+    // last value of the global updater, reused by viewers which join between updates
+    @Getter(AccessLevel.NONE)
+    @ToString.Exclude
+    private volatile R globalValue;
     private ThrowingPredicate<P, Throwable> displayCondition;
     private final TextProvider<R> textProvider;
     private ScoreNumberFormat scoreNumberFormat;
     private Function<P, R> scoreNumberFormatter;
 
     BoardLine(@NonNull ThrowingFunction<P, R, Throwable> updater,
-              @NonNull String teamName,
+              @NonNull LineTemplates templates,
               boolean staticText,
               int index,
               @NonNull TextProvider<R> textProvider,
               @NonNull ThrowingPredicate<P, Throwable> displayCondition) {
         this.updater = updater;
-        this.teamName = teamName;
+        this.globalUpdater = GlobalLineUpdater.unwrap(updater);
+        this.templates = templates;
+        this.teamName = templates.teamName(index);
         this.staticText = staticText;
         this.index = index;
         this.displayCondition = displayCondition;
@@ -67,22 +106,18 @@ public class BoardLine<R, P> {
         return this;
     }
 
-    public WrappedTask updatePeriodically(long delay, long period, @NonNull Board<R, P> board) {
+    public BoardTask updatePeriodically(long delay, long period, @NonNull Board<R, P> board) {
         Preconditions.checkState(!isStaticText(), "Cannot set updater for static text line");
 
         if (updateTask != null) {
             Preconditions.checkState(updateTask.isCancelled(),
                     "Update task for line %s is already running. Cancel it first.", this);
-            board.getFoliaLib().getScheduler().cancelTask(updateTask);
-            board.tasks.remove(updateTask);
         }
 
-        WrappedTask task = board.getFoliaLib().getScheduler().runTimerAsync(() -> board.updateLine(this), delay, period);
+        BoardTask task = board.schedule(BoardTask.Type.LINE, this, delay, period, true, board.isStaggerUpdates());
 
         this.updateTask = task;
 
-        board.bindWrappedTask(task);
-
         return task;
     }
 
@@ -105,66 +140,260 @@ public class BoardLine<R, P> {
      */
     public void setUpdater(@NonNull ThrowingFunction<P, R, Throwable> updater) {
         Preconditions.checkState(!isStaticText(), "Cannot set updater for static text line");
-        this.updater = updater;
+
+        synchronized (this) {
+            ThrowingFunction<P, R, Throwable> previous = this.updater;
+
+            if (!removed && previous != updater) {
+                // an animation shown by both updaters keeps running
+                AnimatedLineUpdater.bind(updater, this);
+                AnimatedLineUpdater.release(previous, this);
+            }
+
+            this.updater = updater;
+            this.globalUpdater = GlobalLineUpdater.unwrap(updater);
+            this.globalValue = null;
+        }
     }
 
     /**
-     * Sets updater for this line without player parameter
+     * Sets updater for this line without player parameter, making this line global
      *
      * @param updater - updater function
+     * @see #isGlobal()
      */
     public void setUpdater(@NonNull ThrowingSupplier<R, Throwable> updater) {
-        Preconditions.checkState(!isStaticText(), "Cannot set updater for static text line");
-        this.updater = player -> updater.get();
+        setUpdater(new GlobalLineUpdater<>(updater));
     }
 
-    void updateTeam(@NonNull Player bukkitPlayer, @NonNull P customPlayer, @NonNull String objective) throws Throwable {
+    /**
+     * Starts the animation of the updater, once the line is added to its board.
+     */
+    synchronized void bindUpdater() {
+        if (!removed) {
+            AnimatedLineUpdater.bind(updater, this);
+        }
+    }
+
+    /**
+     * Releases the animation of the updater, once the line is removed from its board.
+     */
+    synchronized void remove() {
+        if (!removed) {
+            removed = true;
+            AnimatedLineUpdater.release(updater, this);
+        }
+    }
+
+    /**
+     * Returns whether this line is global. Text of a global line doesn't depend on the player: it is computed once
+     * per update, rendered once per client protocol and the same packet is sent to all viewers.
+     * Static lines and lines with updater without player parameter are global.
+     *
+     * @return true if this line is global
+     */
+    public boolean isGlobal() {
+        return globalUpdater != null;
+    }
+
+    void updateTeam(@NonNull Player bukkitPlayer, @NonNull P customPlayer, int slot,
+                    int score, @NonNull ViewerState viewer, @Nullable PacketFanout fanout) throws Throwable {
+        ViewerSession session = viewer.getSession();
+        LineState state = viewer.getLines();
         boolean visible = displayCondition.test(customPlayer);
 
         if (!isStaticText() && visible) {
-            R text = updater.apply(customPlayer);
-            sendPacket(bukkitPlayer, ScoreboardPackets.createTeamPacket(
-                    ScoreboardPackets.TEAM_UPDATED, index, teamName,
-                    bukkitPlayer, text, textProvider));
+            RenderedText<R> text = render(bukkitPlayer, customPlayer, session, true, fanout);
+
+            sendText(bukkitPlayer, session, state, slot, ScoreboardPackets.TEAM_UPDATED, text, fanout);
         }
 
         if (!visible) {
             // if player doesn't meet display condition, remove score
-            sendPacket(bukkitPlayer, ScoreboardPackets.createScorePacket(
-                    bukkitPlayer, 1, objective, score, index, textProvider, scoreNumberFormat, null));
+            synchronized (state) {
+                if (state.isVisible(slot)) {
+                    state.hide(slot);
+
+                    sendPacket(session, fanout, RESET_SCORE, slot, null, () -> ScoreboardPackets.createScorePacket(
+                            templates.score(slot, 1), session, 1, 0, null, null));
+                }
+            }
             return;
         }
 
-        sendPacket(bukkitPlayer, ScoreboardPackets.createScorePacket(
-                bukkitPlayer, 0, objective, score, index, textProvider, scoreNumberFormat,
-                scoreNumberFormatter != null ? player -> scoreNumberFormatter.apply(customPlayer) : null));
+        sendScore(bukkitPlayer, customPlayer, slot, score, session, state, fanout);
+    }
+
+    /**
+     * Moves the score of this line without updating its text, if the line is visible to the viewer.
+     */
+    void updateScore(@NonNull Player bukkitPlayer, @NonNull P customPlayer, int slot,
+                     int score, @NonNull ViewerState viewer, @Nullable PacketFanout fanout) {
+        LineState state = viewer.getLines();
+
+        synchronized (state) {
+            if (!state.isVisible(slot) || state.score(slot) == score) {
+                return;
+            }
+        }
+
+        sendScore(bukkitPlayer, customPlayer, slot, score, viewer.getSession(), state, fanout);
     }
 
-    void removeTeam(@NonNull Player bukkitPlayer, @NonNull String objective) {
-        sendPacket(bukkitPlayer, ScoreboardPackets.createScorePacket(
-                bukkitPlayer, 1, objective, score, index, textProvider, null, null));
+    void removeTeam(@NonNull Player bukkitPlayer, int slot, @NonNull ViewerState viewer,
+                    @Nullable PacketFanout fanout) {
+        ViewerSession session = viewer.getSession();
+        LineState state = viewer.getLines();
+
+        synchronized (state) {
+            state.reset(slot);
+
+            sendPacket(session, fanout, RESET_SCORE, slot, null, () -> ScoreboardPackets.createScorePacket(
+                    templates.score(slot, 1), session, 1, 0, null, null));
 
-        sendPacket(bukkitPlayer, ScoreboardPackets.createTeamPacket(ScoreboardPackets.TEAM_REMOVED, index, teamName,
-                bukkitPlayer, null, textProvider));
+            sendPacket(session, fanout, TEAM + ScoreboardPackets.TEAM_REMOVED, slot, null, () -> ScoreboardPackets.createTeamPacket(
+                    templates.team(slot, ScoreboardPackets.TEAM_REMOVED, session.getProfile()),
+                    ProtocolProfile.server(), session, bukkitPlayer, null, null, textProvider));
+        }
     }
 
-    void createTeam(@NonNull Player bukkitPlayer, @NonNull P customPlayer, @NonNull String objective) throws Throwable {
+    void createTeam(@NonNull Player bukkitPlayer, @NonNull P customPlayer, int slot,
+                    int score, @NonNull ViewerState viewer, @Nullable PacketFanout fanout) throws Throwable {
+        ViewerSession session = viewer.getSession();
+        LineState state = viewer.getLines();
         boolean visible = displayCondition.test(customPlayer);
 
-        R text = visible ? updater.apply(customPlayer) : textProvider.emptyMessage();
+        RenderedText<R> text = render(bukkitPlayer, customPlayer, session, visible, fanout);
 
-        sendPacket(bukkitPlayer, ScoreboardPackets.createTeamPacket(ScoreboardPackets.TEAM_CREATED, index, teamName,
-                bukkitPlayer, text, textProvider));
+        // the team could be already created for this viewer, creating it twice is an error on the client
+        sendText(bukkitPlayer, session, state, slot, ScoreboardPackets.TEAM_CREATED, text, fanout);
 
         if (visible) {
-            sendPacket(bukkitPlayer, ScoreboardPackets.createScorePacket(
-                    bukkitPlayer, 0, objective, score, index, textProvider, scoreNumberFormat,
-                    scoreNumberFormatter != null ? player -> scoreNumberFormatter.apply(customPlayer) : null));
+            sendScore(bukkitPlayer, customPlayer, slot, score, session, state, fanout);
         }
     }
 
+    /**
+     * Returns whether the rendered text of this line is the same for all viewers of the same protocol,
+     * so it can be encoded once per protocol profile.
+     */
+    private boolean isShared() {
+        return isGlobal() && textProvider.isPlayerIndependent();
+    }
+
+    private R nextGlobalValue() throws Throwable {
+        R value = globalUpdater.get();
+        this.globalValue = value;
+        return value;
+    }
+
+    private R globalValue(@Nullable PacketFanout fanout) throws Throwable {
+        if (fanout != null) {
+            return fanout.compute(this, VALUE, null, this::nextGlobalValue);
+        }
+
+        // single viewer outside of update, don't advance the updater
+        R value = this.globalValue;
+        return value != null ? value : nextGlobalValue();
+    }
+
+    private RenderedText<R> render(@NonNull Player bukkitPlayer, @NonNull P customPlayer,
+                                   @NonNull ViewerSession session, boolean visible,
+                                   @Nullable PacketFanout fanout) throws Throwable {
+        ProtocolProfile client = session.getProfile();
+
+        if (!visible) {
+            R empty = textProvider.emptyMessage();
+
+            return fanout == null || !isShared()
+                    ? render(client, bukkitPlayer, empty)
+                    : fanout.compute(this, EMPTY_TEXT, client, () -> render(client, bukkitPlayer, empty));
+        }
+
+        if (!isGlobal()) {
+            return render(client, bukkitPlayer, updater.apply(customPlayer));
+        }
+
+        R text = globalValue(fanout);
+
+        return fanout == null || !isShared()
+                ? render(client, bukkitPlayer, text)
+                : fanout.compute(this, TEXT, client, () -> render(client, bukkitPlayer, text));
+    }
+
+    private RenderedText<R> render(@NonNull ProtocolProfile client, @NonNull Player bukkitPlayer, @NonNull R text) {
+        return new RenderedText<>(ScoreboardPackets.renderText(client, bukkitPlayer, text, textProvider), text);
+    }
+
+    private void sendText(@NonNull Player bukkitPlayer, @NonNull ViewerSession session, @NonNull LineState state,
+                          int slot, int mode, @NonNull RenderedText<R> text, @Nullable PacketFanout fanout) {
+        synchronized (state) {
+            if (mode == ScoreboardPackets.TEAM_CREATED && state.isCreated(slot)) {
+                mode = ScoreboardPackets.TEAM_UPDATED;
+            } else if (state.textHash(slot) == text.hash) {
+                return;
+            }
+
+            state.setText(slot, text.hash);
+
+            int teamMode = mode;
+            // player dependent providers may resolve placeholders while writing the component,
+            // which must not happen on the event loop, the JSON rendered here is written instead
+            R component = textProvider.isPlayerIndependent() || !PacketBatch.isDeferred() ? text.component : null;
+
+            // rendered text of shared lines is cached per profile, so it identifies the payload of the packet
+            sendPacket(session, isShared() ? fanout : null, TEAM + teamMode, slot, text,
+                    () -> ScoreboardPackets.createTeamPacket(templates.team(slot, teamMode, session.getProfile()),
+                            ProtocolProfile.server(), session, bukkitPlayer, text.text, component, textProvider));
+        }
+    }
+
+    private void sendScore(@NonNull Player bukkitPlayer, @NonNull P customPlayer, int slot, int score,
+                           @NonNull ViewerSession session, @NonNull LineState state, @Nullable PacketFanout fanout) {
+        ScoreNumberFormat numberFormat = this.scoreNumberFormat;
+        String numberFormatJson = null;
+
+        if (numberFormat != null && scoreNumberFormatter != null && ProtocolProfile.server().isNumberFormats()) {
+            numberFormatJson = textProvider.asJsonMessage(bukkitPlayer, scoreNumberFormatter.apply(customPlayer));
+        }
+
+        long numberFormatHash = LineState.hash(numberFormatJson);
+
+        synchronized (state) {
+            if (state.hasScore(slot, score, numberFormat, numberFormatHash)) {
+                return;
+            }
+
+            state.setScore(slot, score, numberFormat, numberFormatHash);
+
+            String formatJson = numberFormatJson;
+            PacketTemplate template = templates.score(slot, 0);
+            // the number format depends on the player, so such packet is never shared,
+            // and viewers of one update can be at different layouts, so the score is a part of the key
+            sendPacket(session, formatJson == null ? fanout : null, SCORE, slot, score,
+                    () -> ScoreboardPackets.createScorePacket(template, session, 0, score, numberFormat, formatJson));
+        }
+    }
+
+    /**
+     * Sends the packet which is encoded once per fanout, or for this viewer only if there is no fanout.
+     * Packets of a single viewer may be encoded later on the event loop of its channel.
+     */
+    private void sendPacket(@NonNull ViewerSession session, @Nullable PacketFanout fanout, int kind, int slot,
+                            @Nullable Object variant, @NonNull Supplier<ByteBuf> encoder) {
+        if (fanout == null) {
+            session.send(encoder);
+        } else {
+            session.send(fanout.encode(this, kind | slot << SLOT_SHIFT, variant, encoder));
+        }
+    }
+
+    static void sendPacket(@NonNull ViewerSession session, @NonNull ByteBuf packet) {
+        session.send(packet);
+    }
+
     @SneakyThrows
     static void sendPacket(@NonNull Player player, @NonNull ByteBuf packet) {
-        ChannelInjector.IMP.sendPacket(player, packet);
+        ChannelInjector.IMP.getSession(player).send(packet);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,348 @@
+package me.eternalhuman.packetboard;
+
+import com.google.common.base.Preconditions;
+import com.tcoded.folialib.FoliaLib;
+import com.tcoded.folialib.wrapper.task.WrappedTask;
+import lombok.Getter;
+import lombok.NonNull;
+import me.eternalhuman.packetboard.text.AnimationClock;
+import me.eternalhuman.packetboard.util.TimerWheel;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.server.PluginDisableEvent;
+import org.bukkit.plugin.Plugin;
+
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.logging.Level;
+
+/**
+ * Scheduler shared by all boards of a plugin. Instead of a repeating task per board and line it runs a single
+ * async tick task, which exists only while something is scheduled, and keeps refresh deadlines in a
+ * {@link TimerWheel}.
+ * <p>
+ * Tasks of a board which are due in the same tick are run together as one update cycle of the board,
+ * so their packets are batched and a refresh of all lines makes refreshes of single lines redundant.
+ * Async cycles are handed to the async executor, one task per board, so boards are updated in parallel while
+ * cycles of the same board still run one after another in tick order. Sync cycles are run together
+ * in the next server tick.
+ * <p>
+ * Staggered tasks run every tick and render a slice of the viewers, see {@link Board#isStaggerUpdates()}.
+ * <p>
+ * Animations of all boards are advanced by one {@link AnimationClock} at the start of each tick, so an animation
+ * shown by several boards advances once per tick. Boards send the changed frames in their animation tasks.
+ * <p>
+ * Other repeating work of the library, such as page switches of pagers, is scheduled in the same wheel
+ * as {@link Timer}s, which run together in the next server tick.
+ * <p>
+ * The scheduler of a plugin is dropped and its tick task cancelled when the plugin is disabled,
+ * so a reloaded plugin gets a new one.
+ */
+public final class BoardScheduler {
+
+    private static final Map<Plugin, BoardScheduler> SCHEDULERS = new ConcurrentHashMap<>();
+
+    @Getter
+    private final Plugin plugin;
+    @Getter
+    private final FoliaLib foliaLib;
+    @Getter
+    private final AnimationClock animationClock = new AnimationClock();
+
+    // guarded by this
+    private final TimerWheel<TimerWheel.Entry> wheel = new TimerWheel<>();
+    private WrappedTask tickTask;
+    private boolean shutdown;
+
+    // ticks which came while the previous one was still running
+    private final AtomicInteger pendingTicks = new AtomicInteger();
+    // used only by the running tick
+    private final List<BoardTask> due = new ArrayList<>();
+    private final List<Timer> dueTimers = new ArrayList<>();
+    // boards whose async cycle is running, with their cycles which became due meanwhile, guarded by itself
+    private final Map<Board<?, ?>, Deque<Cycle>> runningCycles = new HashMap<>();
+
+    private BoardScheduler(@NonNull Plugin plugin, @NonNull FoliaLib foliaLib) {
+        this.plugin = plugin;
+        this.foliaLib = foliaLib;
+    }
+
+    /**
+     * Returns the scheduler of the plugin, creating it on first use.
+     *
+     * @param plugin - plugin
+     * @return scheduler of the plugin
+     */
+    public static BoardScheduler of(@NonNull Plugin plugin) {
+        return of(plugin, FoliaLib::new);
+    }
+
+    /**
+     * @param foliaLib - creates the platform scheduler of the plugin, if the plugin has no scheduler yet
+     */
+    static BoardScheduler of(@NonNull Plugin plugin, @NonNull Function<Plugin, FoliaLib> foliaLib) {
+        return SCHEDULERS.computeIfAbsent(plugin, key -> {
+            BoardScheduler scheduler = new BoardScheduler(key, foliaLib.apply(key));
+            key.getServer().getPluginManager().registerEvents(scheduler.new DisableListener(), key);
+            return scheduler;
+        });
+    }
+
+    BoardTask schedule(@NonNull Board<?, ?> board, @NonNull BoardTask.Type type, @Nullable BoardLine<?, ?> line,
+                       long delay, long period, boolean async, boolean staggered) {
+        Preconditions.checkArgument(period > 0, "Period must be positive");
+
+        BoardTask task = new BoardTask(this, board, type, line, period, async, staggered && period > 1);
+
+        synchronized (this) {
+            wheel.schedule(task, Math.max(delay, 1));
+            startTicking();
+        }
+
+        return task;
+    }
+
+    synchronized void cancel(@NonNull BoardTask task) {
+        wheel.cancel(task);
+    }
+
+    /**
+     * Returns the current tick of the scheduler, e.g. to align the first run of a timer with its phase.
+     *
+     * @return current tick
+     */
+    public synchronized long getTick() {
+        return wheel.getTick();
+    }
+
+    /**
+     * Schedules the timer, it runs in the next server tick after the delay and then once per its period.
+     *
+     * @param timer - timer which isn't scheduled
+     * @param delay - delay in ticks, at least 1
+     */
+    public synchronized void schedule(@NonNull Timer timer, long delay) {
+        wheel.schedule(timer, delay);
+        startTicking();
+    }
+
+    /**
+     * Moves the next run of a scheduled timer.
+     *
+     * @param timer - timer
+     * @param delay - delay in ticks from now, at least 1
+     * @return false if the timer isn't scheduled
+     */
+    public synchronized boolean reschedule(@NonNull Timer timer, long delay) {
+        if (!wheel.cancel(timer)) {
+            return false;
+        }
+
+        wheel.schedule(timer, delay);
+        return true;
+    }
+
+    /**
+     * Cancels the timer, it's removed from the scheduler right away.
+     *
+     * @param timer - timer
+     * @return false if the timer wasn't scheduled
+     */
+    public synchronized boolean cancel(@NonNull Timer timer) {
+        return wheel.cancel(timer);
+    }
+
+    // guarded by this
+    private void startTicking() {
+        // tasks of a disabled plugin can't be scheduled anymore
+        if (tickTask == null && !shutdown) {
+            tickTask = foliaLib.getScheduler().runTimerAsync(this::tick, 1, 1);
+        }
+    }
+
+    private void shutdown() {
+        SCHEDULERS.remove(plugin, this);
+
+        synchronized (this) {
+            shutdown = true;
+
+            if (tickTask != null) {
+                foliaLib.getScheduler().cancelTask(tickTask);
+                tickTask = null;
+            }
+        }
+    }
+
+    private void tick() {
+        // a slow tick catches up the ticks which came while it was running
+        if (pendingTicks.getAndIncrement() > 0) {
+            return;
+        }
+
+        do {
+            advance();
+        } while (pendingTicks.decrementAndGet() > 0);
+    }
+
+    private void advance() {
+        long tick;
+
+        synchronized (this) {
+            tick = wheel.getTick() + 1;
+            wheel.advance(entry -> {
+                if (entry instanceof Timer) {
+                    Timer timer = (Timer) entry;
+                    dueTimers.add(timer);
+                    wheel.schedule(timer, timer.period);
+                } else {
+                    BoardTask task = (BoardTask) entry;
+                    due.add(task);
+                    wheel.schedule(task, task.isStaggered() ? 1 : task.getPeriod());
+                }
+            });
+
+            if (wheel.getSize() == 0 && tickTask != null) {
+                foliaLib.getScheduler().cancelTask(tickTask);
+                tickTask = null;
+            }
+        }
+
+        // frames change before the boards run their animation tasks of this tick
+        animationClock.tick();
+
+        if (!dueTimers.isEmpty()) {
+            List<Timer> timers = new ArrayList<>(dueTimers);
+            dueTimers.clear();
+            foliaLib.getScheduler().runNextTick(task -> runTimers(timers));
+        }
+
+        if (due.isEmpty()) {
+            return;
+        }
+
+        Map<Board<?, ?>, List<BoardTask>> asyncCycles = new LinkedHashMap<>();
+        Map<Board<?, ?>, List<BoardTask>> syncCycles = new LinkedHashMap<>();
+
+        for (BoardTask task : due) {
+            (task.isAsync() ? asyncCycles : syncCycles)
+                    .computeIfAbsent(task.getBoard(), board -> new ArrayList<>(2))
+                    .add(task);
+        }
+
+        due.clear();
+
+        if (!syncCycles.isEmpty()) {
+            foliaLib.getScheduler().runNextTick(task -> runCycles(syncCycles, tick));
+        }
+
+        asyncCycles.forEach((board, tasks) -> runAsync(new Cycle(board, tasks, tick)));
+    }
+
+    private void runAsync(Cycle cycle) {
+        synchronized (runningCycles) {
+            Deque<Cycle> queued = runningCycles.get(cycle.board);
+
+            if (queued != null) {
+                // the running cycle of the board runs this one after itself
+                queued.add(cycle);
+                return;
+            }
+
+            runningCycles.put(cycle.board, new ArrayDeque<>());
+        }
+
+        foliaLib.getScheduler().runAsync(task -> {
+            Cycle next = cycle;
+
+            while (next != null) {
+                next.run();
+
+                synchronized (runningCycles) {
+                    next = runningCycles.get(cycle.board).poll();
+
+                    if (next == null) {
+                        runningCycles.remove(cycle.board);
+                    }
+                }
+            }
+        });
+    }
+
+    private void runTimers(List<Timer> timers) {
+        for (Timer timer : timers) {
+            try {
+                timer.run();
+            } catch (Throwable throwable) {
+                plugin.getLogger().log(Level.SEVERE, "Failed to run packetboard timer", throwable);
+            }
+        }
+    }
+
+    private void runCycles(Map<Board<?, ?>, List<BoardTask>> cycles, long tick) {
+        cycles.forEach((board, tasks) -> new Cycle(board, tasks, tick).run());
+    }
+
+    /**
+     * Tasks of a board which are due in the same tick.
+     */
+    private final class Cycle {
+
+        final Board<?, ?> board;
+        final List<BoardTask> tasks;
+        final long tick;
+
+        Cycle(Board<?, ?> board, List<BoardTask> tasks, long tick) {
+            this.board = board;
+            this.tasks = tasks;
+            this.tick = tick;
+        }
+
+        void run() {
+            try {
+                board.runCycle(tasks, tick);
+            } catch (Throwable throwable) {
+                plugin.getLogger().log(Level.SEVERE,
+                        "Failed to update packetboard " + board.getObjective().getName(), throwable);
+            }
+        }
+    }
+
+    private final class DisableListener implements Listener {
+
+        @EventHandler(priority = EventPriority.MONITOR)
+        public void onDisable(PluginDisableEvent event) {
+            if (event.getPlugin() == plugin) {
+                shutdown();
+            }
+        }
+    }
+
+    /**
+     * Repeating work scheduled in the wheel of a scheduler. It's run in the server tick after each deadline,
+     * on Folia in the global region, and rescheduled by its period until it's cancelled.
+     */
+    public abstract static class Timer extends TimerWheel.Entry {
+
+        private final long period;
+
+        /**
+         * @param period - period in ticks, at least 1
+         */
+        protected Timer(long period) {
+            Preconditions.checkArgument(period > 0, "Period must be positive");
+            this.period = period;
+        }
+
+        protected abstract void run();
+    }
+}
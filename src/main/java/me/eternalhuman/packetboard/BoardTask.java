@@ -0,0 +1,77 @@
+package me.eternalhuman.packetboard;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import me.eternalhuman.packetboard.util.TimerWheel;
+
+import javax.annotation.Nullable;
+import java.util.function.Predicate;
+
+/**
+ * Repeating refresh of a board scheduled in the {@link BoardScheduler} of its plugin.
+ */
+@Getter
+public final class BoardTask extends TimerWheel.Entry {
+
+    @Getter(AccessLevel.NONE)
+    private final BoardScheduler scheduler;
+    private final Board<?, ?> board;
+    @Getter(AccessLevel.PACKAGE)
+    private final Type type;
+    /**
+     * Updated line if the task updates a single line
+     */
+    @Nullable
+    private final BoardLine<?, ?> line;
+    private final long period;
+    private final boolean async;
+    /**
+     * Whether the task runs every tick and renders only the viewers whose phase falls into the tick,
+     * so each viewer is still updated once per period
+     */
+    private final boolean staggered;
+    private volatile boolean cancelled;
+
+    BoardTask(BoardScheduler scheduler, Board<?, ?> board, Type type, @Nullable BoardLine<?, ?> line,
+              long period, boolean async, boolean staggered) {
+        this.scheduler = scheduler;
+        this.board = board;
+        this.type = type;
+        this.line = line;
+        this.period = period;
+        this.async = async;
+        this.staggered = staggered;
+    }
+
+    /**
+     * Cancels the task, it's removed from the scheduler right away.
+     */
+    public void cancel() {
+        this.cancelled = true;
+        scheduler.cancel(this);
+        board.scheduledTasks.remove(this);
+    }
+
+    /**
+     * Returns the viewers which the task renders in the tick.
+     *
+     * @param tick - tick of the scheduler
+     * @return viewer filter, null if all viewers are rendered
+     */
+    @Nullable
+    Predicate<ViewerState> slice(long tick) {
+        if (!staggered) {
+            return null;
+        }
+
+        long slice = tick % period;
+        return viewer -> viewer.getPhase() % period == slice;
+    }
+
+    enum Type {
+        ANIMATIONS,
+        ALL_LINES,
+        LINE,
+        ADMISSION
+    }
+}
@@ -0,0 +1,252 @@
+package me.eternalhuman.packetboard;
+
+import com.google.common.base.Preconditions;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.NonNull;
+import me.eternalhuman.packetboard.text.TextIterator;
+import me.eternalhuman.packetboard.text.TextProvider;
+import me.eternalhuman.packetboard.util.lang.ThrowingFunction;
+import me.eternalhuman.packetboard.util.lang.ThrowingPredicate;
+import me.eternalhuman.packetboard.util.lang.ThrowingSupplier;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Immutable board definition which is built once and shown to any number of players, replacing
+ * the pattern of one {@link Board} per player.
+ * <p>
+ * Title, lines, display conditions and number formats are defined once, every text is still rendered
+ * for each player separately by the functions of the definition. The template owns a single board, so the
+ * objective, lines, compiled packet templates and scheduled updates are shared, and a player costs only
+ * the compact client state of its lines.
+ */
+public final class BoardTemplate<R, P> {
+
+    @Getter(AccessLevel.PACKAGE)
+    private final Board<R, P> board;
+
+    private BoardTemplate(@NonNull Board<R, P> board) {
+        this.board = board;
+    }
+
+    public static <R, P> Builder<R, P> builder() {
+        return new Builder<>();
+    }
+
+    /**
+     * Shows the board to the player.
+     *
+     * @param player - player
+     */
+    public void show(@NonNull Player player) {
+        board.addViewer(player);
+    }
+
+    /**
+     * Shows the board to the players in one batch.
+     *
+     * @param players - players
+     * @see Board#addViewers
+     */
+    public void show(@NonNull Collection<? extends Player> players) {
+        board.addViewers(players);
+    }
+
+    /**
+     * Shows the board to the player off the calling thread.
+     *
+     * @param player - player
+     * @return future completed once the board is sent
+     * @see Board#addViewerAsync
+     */
+    public CompletableFuture<Void> showAsync(@NonNull Player player) {
+        return board.addViewerAsync(player);
+    }
+
+    /**
+     * Hides the board from the player.
+     *
+     * @param player - player
+     */
+    public void hide(@NonNull Player player) {
+        board.removeViewer(player);
+    }
+
+    public boolean isShown(@NonNull Player player) {
+        return board.getViewers().contains(player.getUniqueId());
+    }
+
+    public Set<UUID> getViewers() {
+        return board.getViewers();
+    }
+
+    /**
+     * Renders all lines for all players now, packets are sent only for texts which have changed.
+     */
+    public void update() {
+        board.updateAllLines();
+    }
+
+    /**
+     * Hides the board from all players and cancels its updates.
+     */
+    public void destroy() {
+        board.destroy();
+    }
+
+    @NoArgsConstructor(access = AccessLevel.PRIVATE)
+    public static class Builder<R, P> {
+
+        private final Board.Builder<R, P> board = Board.builder();
+        private final List<Function<Board<R, P>, BoardLine<R, P>>> lines = new ArrayList<>();
+        private final List<Consumer<BoardLine<R, P>>> lineConfigurers = new ArrayList<>();
+        private Consumer<ScoreboardObjective<R>> objectiveConfigurer;
+        private long updatePeriod;
+
+        public Builder<R, P> title(@NonNull R title) {
+            board.title(title);
+            return this;
+        }
+
+        public Builder<R, P> title(@NonNull TextIterator titleIterator) {
+            board.title(titleIterator);
+            return this;
+        }
+
+        public Builder<R, P> title(@NonNull ThrowingFunction<P, R, Throwable> titleFunction) {
+            board.title(titleFunction);
+            return this;
+        }
+
+        public Builder<R, P> plugin(@NonNull Plugin plugin) {
+            board.plugin(plugin);
+            return this;
+        }
+
+        public Builder<R, P> textProvider(@NonNull TextProvider<R> textProvider) {
+            board.textProvider(textProvider);
+            return this;
+        }
+
+        public Builder<R, P> playerFunction(@NonNull ThrowingFunction<Player, P, Throwable> playerFunction) {
+            board.playerFunction(playerFunction);
+            return this;
+        }
+
+        /**
+         * Applies options of the underlying board, such as batching or staggered updates.
+         *
+         * @param options - options of the board builder
+         */
+        public Builder<R, P> options(@NonNull Consumer<Board.Builder<R, P>> options) {
+            options.accept(board);
+            return this;
+        }
+
+        /**
+         * Sets period of line updates, 0 disables periodic updates.
+         *
+         * @param updatePeriod - period in ticks
+         */
+        public Builder<R, P> updatePeriod(long updatePeriod) {
+            Preconditions.checkArgument(updatePeriod >= 0, "Update period cannot be negative");
+            this.updatePeriod = updatePeriod;
+            return this;
+        }
+
+        public Builder<R, P> textLine(@NonNull String text) {
+            return addLine(board -> board.addTextLine(text));
+        }
+
+        public Builder<R, P> line(@NonNull R text) {
+            return addLine(board -> board.addLine(text));
+        }
+
+        public Builder<R, P> line(@NonNull ThrowingFunction<P, R, Throwable> updater) {
+            return addLine(board -> board.addUpdatableLine(updater));
+        }
+
+        public Builder<R, P> line(@NonNull ThrowingSupplier<R, Throwable> updater) {
+            return addLine(board -> board.addGlobalLine(updater));
+        }
+
+        public Builder<R, P> conditionalLine(@NonNull ThrowingFunction<P, R, Throwable> updater,
+                                             @NonNull ThrowingPredicate<P, Throwable> condition) {
+            return addLine(board -> board.addConditionalLine(updater, condition));
+        }
+
+        public Builder<R, P> animatedLine(@NonNull TextIterator iterator) {
+            return addLine(board -> board.addAnimatedLine(iterator));
+        }
+
+        public Builder<R, P> blankLine() {
+            return addLine(Board::addBlankLine);
+        }
+
+        /**
+         * Configures the last added line, e.g. its score number format.
+         *
+         * @param configurer - line configurer
+         */
+        public Builder<R, P> configureLine(@NonNull Consumer<BoardLine<R, P>> configurer) {
+            Preconditions.checkState(!lines.isEmpty(), "No line to configure");
+
+            int last = lineConfigurers.size() - 1;
+            Consumer<BoardLine<R, P>> previous = lineConfigurers.get(last);
+            lineConfigurers.set(last, previous == null ? configurer : previous.andThen(configurer));
+            return this;
+        }
+
+        /**
+         * Configures the objective, e.g. its score number format.
+         *
+         * @param configurer - objective configurer
+         */
+        public Builder<R, P> configureObjective(@NonNull Consumer<ScoreboardObjective<R>> configurer) {
+            this.objectiveConfigurer = objectiveConfigurer == null ? configurer : objectiveConfigurer.andThen(configurer);
+            return this;
+        }
+
+        private Builder<R, P> addLine(Function<Board<R, P>, BoardLine<R, P>> line) {
+            lines.add(line);
+            lineConfigurers.add(null);
+            return this;
+        }
+
+        public BoardTemplate<R, P> build() {
+            Board<R, P> board = this.board.build();
+
+            if (objectiveConfigurer != null) {
+                objectiveConfigurer.accept(board.getObjective());
+            }
+
+            for (int i = 0; i < lines.size(); i++) {
+                BoardLine<R, P> line = lines.get(i).apply(board);
+
+                if (lineConfigurers.get(i) != null) {
+                    lineConfigurers.get(i).accept(line);
+                }
+            }
+
+            // lay out the lines before anyone is added
+            board.updateAllLines();
+
+            if (updatePeriod > 0) {
+                board.updateLinesPeriodically(0, updatePeriod);
+            }
+
+            return new BoardTemplate<>(board);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package me.eternalhuman.packetboard;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import me.eternalhuman.packetboard.util.lang.ThrowingFunction;
+import me.eternalhuman.packetboard.util.lang.ThrowingSupplier;
+
+/**
+ * Line updater which ignores the player, lines created with it are global:
+ * their text is computed once per update and shared between all viewers.
+ */
+@RequiredArgsConstructor
+final class GlobalLineUpdater<P, R> implements ThrowingFunction<P, R, Throwable> {
+
+    @NonNull
+    final ThrowingSupplier<R, Throwable> supplier;
+
+    @Override
+    public R apply(P player) throws Throwable {
+        return supplier.get();
+    }
+
+    @SuppressWarnings("unchecked")
+    static <R> ThrowingSupplier<R, Throwable> unwrap(@NonNull ThrowingFunction<?, R, Throwable> updater) {
+        if (updater instanceof AnimatedLineUpdater) {
+            // frames of an animation are the same for everyone
+            return ((AnimatedLineUpdater<?, R>) updater)::frame;
+        }
+
+        return updater instanceof GlobalLineUpdater ? ((GlobalLineUpdater<?, R>) updater).supplier : null;
+    }
+}
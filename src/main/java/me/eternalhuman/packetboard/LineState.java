@@ -0,0 +1,108 @@
+package me.eternalhuman.packetboard;
+
+import me.eternalhuman.packetboard.protocol.ScoreNumberFormat;
+
+import java.util.Arrays;
+
+/**
+ * What a single viewer currently has on the client for every line, indexed by line index.
+ * Used to skip packets which wouldn't change anything.
+ * <p>
+ * Kept in a few primitive arrays instead of an object per line, so the state of a viewer takes a few hundred bytes.
+ * Guarded by the monitor of this object.
+ */
+final class LineState {
+
+    static final long NONE = 0;
+
+    // a board has up to 16 lines, their indexes are reused
+    static final int LINES = 16;
+
+    private static final int CREATED = 1;
+    private static final int VISIBLE = 1 << 1;
+    // ordinal of the number format + 1, 0 if there's no format
+    private static final int NUMBER_FORMAT_SHIFT = 2;
+
+    private static final ScoreNumberFormat[] NUMBER_FORMATS = ScoreNumberFormat.values();
+
+    private final byte[] flags = new byte[LINES];
+    private final int[] scores = new int[LINES];
+    private final long[] textHashes = new long[LINES];
+    private final long[] numberFormatHashes = new long[LINES];
+
+    LineState() {
+        Arrays.fill(scores, -1);
+    }
+
+    boolean isCreated(int line) {
+        return (flags[line] & CREATED) != 0;
+    }
+
+    boolean isVisible(int line) {
+        return (flags[line] & VISIBLE) != 0;
+    }
+
+    int score(int line) {
+        return scores[line];
+    }
+
+    long textHash(int line) {
+        return textHashes[line];
+    }
+
+    /**
+     * Returns whether the line is visible with this score and number format.
+     */
+    boolean hasScore(int line, int score, ScoreNumberFormat numberFormat, long numberFormatHash) {
+        return isVisible(line) && scores[line] == score
+                && numberFormat(line) == numberFormat && numberFormatHashes[line] == numberFormatHash;
+    }
+
+    void setText(int line, long textHash) {
+        flags[line] |= CREATED;
+        textHashes[line] = textHash;
+    }
+
+    void setScore(int line, int score, ScoreNumberFormat numberFormat, long numberFormatHash) {
+        int format = numberFormat == null ? 0 : numberFormat.ordinal() + 1;
+
+        flags[line] = (byte) ((flags[line] & CREATED) | VISIBLE | format << NUMBER_FORMAT_SHIFT);
+        scores[line] = score;
+        numberFormatHashes[line] = numberFormatHash;
+    }
+
+    void hide(int line) {
+        flags[line] &= ~VISIBLE;
+        scores[line] = -1;
+    }
+
+    void reset(int line) {
+        flags[line] = 0;
+        scores[line] = -1;
+        textHashes[line] = NONE;
+        numberFormatHashes[line] = NONE;
+    }
+
+    private ScoreNumberFormat numberFormat(int line) {
+        int format = flags[line] >>> NUMBER_FORMAT_SHIFT;
+        return format == 0 ? null : NUMBER_FORMATS[format - 1];
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the rendered text, never equal to {@link #NONE}.
+     */
+    static long hash(String text) {
+        if (text == null) {
+            return NONE;
+        }
+
+        long hash = 0xcbf29ce484222325L;
+
+        for (int i = 0; i < text.length(); i++) {
+            hash ^= text.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+
+        return hash == NONE ? 1 : hash;
+    }
+}
@@ -0,0 +1,74 @@
+package me.eternalhuman.packetboard;
+
+import lombok.NonNull;
+import me.eternalhuman.packetboard.protocol.PacketTemplate;
+import me.eternalhuman.packetboard.protocol.ProtocolProfile;
+import me.eternalhuman.packetboard.protocol.ScoreboardPackets;
+
+import java.util.Arrays;
+
+/**
+ * Invariant parts of the team and score packets of every line slot of a board, encoded on first use.
+ * A slot is the team and the score entry which display a line, see {@link Board#isStableOrdering()}.
+ */
+final class LineTemplates {
+
+    private static final int TEAM_VARIANTS = (ScoreboardPackets.TEAM_UPDATED + 1) * 2;
+
+    private final String objective;
+    // see ScoreboardPackets#entry, changed only while the board has no viewers
+    private volatile int entryVariant;
+
+    // concurrent viewers may encode the same template twice, both are equal
+    private final PacketTemplate[] teams = new PacketTemplate[LineState.LINES * TEAM_VARIANTS];
+    private final PacketTemplate[] scores = new PacketTemplate[LineState.LINES * 2];
+
+    LineTemplates(@NonNull String objective) {
+        this.objective = objective;
+    }
+
+    int getEntryVariant() {
+        return entryVariant;
+    }
+
+    void setEntryVariant(int entryVariant) {
+        this.entryVariant = entryVariant;
+        Arrays.fill(teams, null);
+        Arrays.fill(scores, null);
+    }
+
+    String teamName(int slot) {
+        return objective + slot;
+    }
+
+    PacketTemplate team(int slot, int mode, @NonNull ProtocolProfile client) {
+        int key = slot * TEAM_VARIANTS + mode * 2 + (client.isJsonText() ? 1 : 0);
+        PacketTemplate template = teams[key];
+
+        if (template == null) {
+            template = ScoreboardPackets.teamTemplate(mode, entry(slot), teamName(slot), ProtocolProfile.server(), client);
+            teams[key] = template;
+        }
+
+        return template;
+    }
+
+    /**
+     * @param action - 0 to update the score, 1 to reset it
+     */
+    PacketTemplate score(int slot, int action) {
+        int key = slot * 2 + action;
+        PacketTemplate template = scores[key];
+
+        if (template == null) {
+            template = ScoreboardPackets.scoreTemplate(action, entry(slot), objective, ProtocolProfile.server());
+            scores[key] = template;
+        }
+
+        return template;
+    }
+
+    private String entry(int slot) {
+        return ScoreboardPackets.entry(slot, entryVariant);
+    }
+}
@@ -0,0 +1,20 @@
+package me.eternalhuman.packetboard;
+
+import lombok.NonNull;
+
+/**
+ * Text of a line rendered for some client protocol profile together with its hash for delta checks
+ * and the source component for providers which write components directly.
+ */
+final class RenderedText<R> {
+
+    final String text;
+    final long hash;
+    final R component;
+
+    RenderedText(@NonNull String text, @NonNull R component) {
+        this.text = text;
+        this.hash = LineState.hash(text);
+        this.component = component;
+    }
+}
@@ -3,18 +3,26 @@ package me.eternalhuman.packetboard;
 import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
 import io.netty.buffer.ByteBuf;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NonNull;
 import me.eternalhuman.packetboard.protocol.ChannelInjector;
+import me.eternalhuman.packetboard.protocol.PacketFanout;
 import me.eternalhuman.packetboard.protocol.PacketIds;
-import me.eternalhuman.packetboard.protocol.ProtocolConstants;
+import me.eternalhuman.packetboard.protocol.PacketTemplate;
+import me.eternalhuman.packetboard.protocol.ProtocolProfile;
 import me.eternalhuman.packetboard.protocol.ScoreNumberFormat;
+import me.eternalhuman.packetboard.protocol.ScoreboardPackets;
+import me.eternalhuman.packetboard.protocol.ViewerSession;
+import me.eternalhuman.packetboard.text.FrameCache;
 import me.eternalhuman.packetboard.text.TextProvider;
 import me.eternalhuman.packetboard.util.buffer.ByteBufNetOutput;
 import me.eternalhuman.packetboard.util.buffer.NetOutput;
-import me.eternalhuman.packetboard.util.version.VersionUtil;
 import org.bukkit.entity.Player;
 
+import javax.annotation.Nullable;
+import java.util.function.Supplier;
+
 import static me.eternalhuman.packetboard.BoardLine.sendPacket;
 
 @Getter
@@ -33,6 +41,16 @@ public class ScoreboardObjective<R> {
 
     private R displayName;
 
+    @Getter(AccessLevel.NONE)
+    private final PacketTemplate displayTemplate;
+
+    // compiled frames of animated titles, they depend on the number format
+    @Getter(AccessLevel.NONE)
+    private final FrameCache<TitleFrame<R>> titleFrames;
+    // current frame if the title is animated
+    @Getter(AccessLevel.NONE)
+    private volatile TitleFrame<R> titleFrame;
+
     ScoreboardObjective(@NonNull String name,
                         R displayName,
                         @NonNull TextProvider<R> textProvider) {
@@ -42,17 +60,71 @@ public class ScoreboardObjective<R> {
         this.name = name;
         this.textProvider = textProvider;
         this.displayName = displayName;
+        this.displayTemplate = ScoreboardPackets.displayObjectiveTemplate(DISPLAY_SCOREBOARD, name, ProtocolProfile.server());
+        this.titleFrames = new FrameCache<>(frame -> new TitleFrame<>(textProvider.fromLegacyMessage(frame)));
     }
 
     void setDisplayName(@NonNull R displayName) {
+        this.titleFrame = null;
         this.displayName = displayName;
     }
 
+    /**
+     * Sets the display name to the frame of the animated title. Every distinct frame is parsed once,
+     * and its update packet is encoded once per JSON support of the client unless it depends on the player.
+     *
+     * @param frame - legacy frame text
+     */
+    void setDisplayFrame(@NonNull String frame) {
+        TitleFrame<R> titleFrame = titleFrames.get(frame);
+        this.displayName = titleFrame.text;
+        this.titleFrame = titleFrame;
+    }
+
     void updateValue(@NonNull Player player) {
-        ByteBuf packet = getPacket(player, UPDATE_VALUE, displayName);
+        updateSharedValue(player, null);
+    }
+
+    /**
+     * Sends current display name, the packet is encoded once per client profile of the fanout
+     * unless it depends on the player.
+     */
+    void updateSharedValue(@NonNull Player player, @Nullable PacketFanout fanout) {
+        ByteBuf packet;
+
+        TitleFrame<R> titleFrame = this.titleFrame;
+        boolean shared = numberFormatter == null && textProvider.isPlayerIndependent();
+
+        if (shared && (titleFrame != null || fanout != null)) {
+            ViewerSession session = ChannelInjector.IMP.getSession(player);
+            ProtocolProfile profile = session.getProfile();
+            R displayName = this.displayName;
+            // a frame of the title animation is encoded once for the whole animation, other titles once per fanout
+            Supplier<ByteBuf> encoder = titleFrame != null
+                    ? () -> frameUpdate(titleFrame, player, profile).create(session)
+                    : () -> getPacket(player, UPDATE_VALUE, displayName);
+
+            packet = fanout != null ? fanout.encode(this, UPDATE_VALUE, profile, encoder) : encoder.get();
+        } else {
+            packet = getPacket(player, UPDATE_VALUE, displayName);
+        }
+
         sendPacket(player, packet);
     }
 
+    private PacketTemplate frameUpdate(TitleFrame<R> frame, Player player, ProtocolProfile client) {
+        int variant = client.isJsonText() ? 1 : 0;
+        PacketTemplate template = frame.updates[variant];
+
+        // concurrent viewers may encode the same template twice, both are equal
+        if (template == null) {
+            template = PacketTemplate.encode(output -> writePacket(output, player, client, UPDATE_VALUE, frame.text), null);
+            frame.updates[variant] = template;
+        }
+
+        return template;
+    }
+
     void updateValue(@NonNull Player player, @NonNull R customDisplayName) {
         ByteBuf packet = getPacket(player, UPDATE_VALUE, customDisplayName);
         sendPacket(player, packet);
@@ -61,20 +133,45 @@ public class ScoreboardObjective<R> {
     public void scoreNumberFormatFixed(@NonNull Function<Player, R> numberFormatter) {
         this.numberFormat = ScoreNumberFormat.FIXED;
         this.numberFormatter = numberFormatter;
+        resetTitleFrames();
     }
 
     public void scoreNumberFormatStyled(@NonNull Function<Player, R> numberFormatter) {
         this.numberFormat = ScoreNumberFormat.STYLED;
         this.numberFormatter = numberFormatter;
+        resetTitleFrames();
     }
 
     public void scoreNumberFormatBlank() {
         this.numberFormat = ScoreNumberFormat.BLANK;
         this.numberFormatter = null;
+        resetTitleFrames();
+    }
+
+    private void resetTitleFrames() {
+        titleFrames.clear();
+        this.titleFrame = null;
     }
 
     void create(@NonNull Player player) {
-        ByteBuf packet = getPacket(player, ADD_OBJECTIVE, displayName);
+        createShared(player, null);
+    }
+
+    /**
+     * Creates the objective with current display name, the packet is encoded once per client profile
+     * of the fanout unless it depends on the player.
+     */
+    void createShared(@NonNull Player player, @Nullable PacketFanout fanout) {
+        ByteBuf packet;
+
+        if (fanout != null && numberFormatter == null && textProvider.isPlayerIndependent()) {
+            R displayName = this.displayName;
+            packet = fanout.encode(this, ADD_OBJECTIVE, ChannelInjector.IMP.getSession(player).getProfile(),
+                    () -> getPacket(player, ADD_OBJECTIVE, displayName));
+        } else {
+            packet = getPacket(player, ADD_OBJECTIVE, displayName);
+        }
+
         sendPacket(player, packet);
     }
 
@@ -89,47 +186,51 @@ public class ScoreboardObjective<R> {
     }
 
     void display(@NonNull Player player) {
-        ByteBuf buf = ChannelInjector.IMP.getChannel(player).alloc().buffer();
-
-        NetOutput output = new ByteBufNetOutput(buf);
-
-        output.writeVarInt(PacketIds.DISPLAY_OBJECTIVES.getServerPacketId());
-
-        output.writeByte(DISPLAY_SCOREBOARD);
-        output.writeString(name);
-
-        sendPacket(player, buf);
+        sendPacket(player, displayTemplate.create(ChannelInjector.IMP.getSession(player)));
     }
 
     private ByteBuf getPacket(@NonNull Player player, int mode, R displayName) {
-        int version = VersionUtil.getPlayerVersion(player.getUniqueId());
+        ViewerSession session = ChannelInjector.IMP.getSession(player);
+        ByteBuf buf = session.allocate();
 
-        ByteBuf buf = ChannelInjector.IMP.getChannel(player).alloc().buffer();
+        ByteBufNetOutput output = ByteBufNetOutput.acquire(buf);
 
-        NetOutput output = new ByteBufNetOutput(buf);
+        try {
+            writePacket(output, player, session.getProfile(), mode, displayName);
+            return buf;
+        } finally {
+            output.release();
+        }
+    }
 
-        output.writeVarInt(PacketIds.UPDATE_OBJECTIVES.getServerPacketId());
+    private void writePacket(@NonNull NetOutput output, @NonNull Player player, @NonNull ProtocolProfile client,
+                             int mode, R displayName) {
+        ProtocolProfile server = ProtocolProfile.server();
+
+        output.writeVarInt(server.getPacketId(PacketIds.UPDATE_OBJECTIVES));
 
         output.writeString(name);
         output.writeByte(mode);
 
         if (mode == ADD_OBJECTIVE || mode == UPDATE_VALUE) {
-            String legacyText = textProvider.asLegacyMessage(player, displayName);
-            // Since 1.13 characters limit for display name was removed
-            if (version < ProtocolConstants.MINECRAFT_1_13 && legacyText.length() > 32) {
-                legacyText = legacyText.substring(0, 32);
-            }
-
-            if (VersionUtil.SERVER_VERSION >= ProtocolConstants.MINECRAFT_1_20_3) {
+            if (server.isNbtComponents()) {
                 // what the heck 1.20.3?
-                output.writeComponent(textProvider.asJsonMessage(player, displayName));
-            } else if (VersionUtil.SERVER_VERSION >= ProtocolConstants.MINECRAFT_1_13) {
+                if (!textProvider.writeComponent(player, displayName, server, output)) {
+                    output.writeComponent(textProvider.asJsonMessage(player, displayName));
+                }
+            } else if (server.isJsonText()) {
                 output.writeString(textProvider.asJsonMessage(player, displayName));
             } else {
+                String legacyText = textProvider.asLegacyMessage(player, displayName);
+                // Since 1.13 characters limit for display name was removed
+                if (!client.isJsonText() && legacyText.length() > 32) {
+                    legacyText = legacyText.substring(0, 32);
+                }
+
                 output.writeString(legacyText);
             }
 
-            if (VersionUtil.SERVER_VERSION >= ProtocolConstants.MINECRAFT_1_20_3) {
+            if (server.isNumberFormats()) {
                 output.writeVarInt(0);
                 output.writeBoolean(numberFormat != null); // has number format
 
@@ -139,17 +240,27 @@ public class ScoreboardObjective<R> {
                     );
                 }
 
-                return buf;
+                return;
             }
 
-            if (VersionUtil.SERVER_VERSION >= ProtocolConstants.MINECRAFT_1_13) {
+            if (server.isVarIntEnums()) {
                 output.writeVarInt(0); // Health display
             } else {
                 output.writeString("integer"); // Health display
             }
         }
+    }
 
+    /**
+     * Frame of the animated title with its update packets, encoded on first use for clients
+     * with and without JSON texts.
+     */
+    private static final class TitleFrame<R> {
+        final R text;
+        final PacketTemplate[] updates = new PacketTemplate[2];
 
-        return buf;
+        TitleFrame(R text) {
+            this.text = text;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,158 @@
+package me.eternalhuman.packetboard;
+
+import lombok.NonNull;
+import me.eternalhuman.packetboard.protocol.ChannelInjector;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Concurrent registry of board viewers.
+ * <p>
+ * Viewers are kept in stripes of copy-on-write arrays: broadcasts iterate immutable snapshots without locks,
+ * so they are never blocked by joins and quits, and a mutation copies only its own stripe.
+ * Viewers who quit are dropped by the shared quit listener of {@link ChannelInjector}, which is registered
+ * only while the registry isn't empty, so abandoned boards are not referenced by it.
+ */
+final class ViewerRegistry {
+
+    private static final int STRIPES = 16;
+    private static final ViewerState[] EMPTY = new ViewerState[0];
+
+    private final Map<UUID, ViewerState> viewers = new ConcurrentHashMap<>();
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final Consumer<UUID> quitListener = this::remove;
+    private final Object listenerLock = new Object();
+    private final Consumer<Consumer<UUID>> addQuitListener;
+    private final Consumer<Consumer<UUID>> removeQuitListener;
+
+    ViewerRegistry() {
+        this(ChannelInjector.IMP::addQuitListener, ChannelInjector.IMP::removeQuitListener);
+    }
+
+    /**
+     * @param addQuitListener    - registers the listener of quitting players
+     * @param removeQuitListener - unregisters the listener of quitting players
+     */
+    ViewerRegistry(@NonNull Consumer<Consumer<UUID>> addQuitListener,
+                   @NonNull Consumer<Consumer<UUID>> removeQuitListener) {
+        this.addQuitListener = addQuitListener;
+        this.removeQuitListener = removeQuitListener;
+
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Adds the viewer unless a viewer with the same id is already registered.
+     *
+     * @param viewer - viewer to add
+     * @return true if the viewer was added
+     */
+    boolean add(@NonNull ViewerState viewer) {
+        UUID uniqueId = viewer.getSession().getUniqueId();
+        Stripe stripe = stripe(uniqueId);
+
+        synchronized (stripe) {
+            if (viewers.putIfAbsent(uniqueId, viewer) != null) {
+                return false;
+            }
+
+            ViewerState[] snapshot = Arrays.copyOf(stripe.snapshot, stripe.snapshot.length + 1);
+            snapshot[snapshot.length - 1] = viewer;
+            stripe.snapshot = snapshot;
+        }
+
+        if (size.getAndIncrement() == 0) {
+            updateQuitListener();
+        }
+
+        return true;
+    }
+
+    @Nullable
+    ViewerState remove(@NonNull UUID uniqueId) {
+        Stripe stripe = stripe(uniqueId);
+        ViewerState viewer;
+
+        synchronized (stripe) {
+            viewer = viewers.remove(uniqueId);
+
+            if (viewer == null) {
+                return null;
+            }
+
+            ViewerState[] snapshot = stripe.snapshot;
+            ViewerState[] updated = new ViewerState[snapshot.length - 1];
+
+            for (int i = 0, j = 0; i < snapshot.length; i++) {
+                if (snapshot[i] != viewer) {
+                    updated[j++] = snapshot[i];
+                }
+            }
+
+            stripe.snapshot = updated.length == 0 ? EMPTY : updated;
+        }
+
+        if (size.decrementAndGet() == 0) {
+            updateQuitListener();
+        }
+
+        return viewer;
+    }
+
+    @Nullable
+    ViewerState get(@NonNull UUID uniqueId) {
+        return viewers.get(uniqueId);
+    }
+
+    boolean contains(@NonNull UUID uniqueId) {
+        return viewers.containsKey(uniqueId);
+    }
+
+    Set<UUID> getIds() {
+        return Collections.unmodifiableSet(viewers.keySet());
+    }
+
+    /**
+     * Calls the consumer for every viewer of the current snapshot. Viewers may be added and removed meanwhile.
+     *
+     * @param consumer - viewer consumer
+     */
+    void forEach(@NonNull Consumer<ViewerState> consumer) {
+        for (Stripe stripe : stripes) {
+            for (ViewerState viewer : stripe.snapshot) {
+                consumer.accept(viewer);
+            }
+        }
+    }
+
+    private Stripe stripe(UUID uniqueId) {
+        return stripes[(uniqueId.hashCode() & Integer.MAX_VALUE) % STRIPES];
+    }
+
+    private void updateQuitListener() {
+        // size is checked again under the lock, so concurrent first join and last quit can't lose the listener
+        synchronized (listenerLock) {
+            if (size.get() > 0) {
+                addQuitListener.accept(quitListener);
+            } else {
+                removeQuitListener.accept(quitListener);
+            }
+        }
+    }
+
+    private static final class Stripe {
+        private volatile ViewerState[] snapshot = EMPTY;
+    }
+}
@@ -0,0 +1,52 @@
+package me.eternalhuman.packetboard;
+
+import lombok.Getter;
+import lombok.NonNull;
+import me.eternalhuman.packetboard.protocol.ViewerSession;
+import org.bukkit.entity.Player;
+
+/**
+ * Per-board state of a single viewer.
+ */
+final class ViewerState {
+
+    @Getter
+    private final Player player;
+    @Getter
+    private final ViewerSession session;
+    /**
+     * Non-negative hash of the viewer, staggered updates render the viewer in tick {@code phase % period}
+     */
+    @Getter
+    private final int phase;
+    /**
+     * Client state of all lines
+     */
+    @Getter
+    private final LineState lines = new LineState();
+
+    /**
+     * Whether the board was sent to the viewer, broadcasts skip viewers which are still being added.
+     */
+    @Getter
+    private volatile boolean ready;
+
+    /**
+     * Layout which the viewer has applied, written under the monitor of this. Layout changes are sent
+     * to the viewer as diffs against it one at a time, so an update which is late never reverts a newer layout.
+     */
+    volatile BoardLayout<?, ?> layout = BoardLayout.empty();
+
+    ViewerState(@NonNull Player player, @NonNull ViewerSession session) {
+        this.player = player;
+        this.session = session;
+
+        // spread the bits, UUID hash codes of offline players aren't random enough
+        int hash = session.getUniqueId().hashCode() * 0x9E3779B9;
+        this.phase = (hash ^ (hash >>> 16)) & Integer.MAX_VALUE;
+    }
+
+    void markReady() {
+        this.ready = true;
+    }
+}
@@ -1,25 +1,52 @@
 package me.eternalhuman.packetboard.pager;
 
-import com.google.common.collect.Iterators;
+import com.google.common.base.Preconditions;
+import com.tcoded.folialib.FoliaLib;
 import lombok.Getter;
 import lombok.NonNull;
 import me.eternalhuman.packetboard.Board;
+import me.eternalhuman.packetboard.BoardScheduler;
+import me.eternalhuman.packetboard.protocol.ChannelInjector;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 import org.bukkit.plugin.Plugin;
-import org.bukkit.scheduler.BukkitTask;
 
+import javax.annotation.Nullable;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
+import java.util.function.IntUnaryOperator;
 
+/**
+ * Shows one board of several pages to each viewer. Every viewer has an own page cursor: pages are switched
+ * automatically once per switch delay and manually by {@link #nextPage}, {@link #previousPage} and {@link #setPage}.
+ * <p>
+ * Automatic switches are staggered: each viewer is switched in the tick given by its phase, a hash of the UUID
+ * modulo the switch delay, so viewers who joined together don't all switch in the same tick. Page cursors
+ * are timers of the shared {@link BoardScheduler} of the plugin, so a pager without viewers schedules nothing.
+ * On Folia pages are shown and switched on the region thread of the viewer.
+ * <p>
+ * Cursors of viewers who quit are dropped by the shared quit listener of {@link ChannelInjector}, which is
+ * registered only while the pager has viewers, so a viewer who joins again is shown the pager anew.
+ */
 public class BoardPager<R, P> {
 
     private final List<Board<R, P>> boards;
-    private final Iterator<Board<R, P>> pageIterator;
-    private final Set<UUID> viewers;
-    private final BukkitTask switchTask;
+    private final Map<UUID, PageCursor> viewers = new ConcurrentHashMap<>();
+    private final long switchDelayTicks;
+    private final BoardScheduler scheduler;
+    private final FoliaLib foliaLib;
+
+    private final Consumer<UUID> quitListener = this::quit;
+    private final Object listenerLock = new Object();
+
+    /**
+     * Whether every page is created for the viewer once, when the pager is shown, and stays on the client.
+     * Hidden pages are updated in the background like the shown one, and a page switch sends a single
+     * display packet per viewer instead of removing one page and creating the next.
+     */
     @Getter
-    private Board<R, P> currentPage;
+    private final boolean preloadPages;
 
     /**
      * Creates a new board pager.
@@ -29,15 +56,33 @@ public class BoardPager<R, P> {
      * @param plugin           - plugin instance
      */
     public BoardPager(@NonNull List<Board<R, P>> boards, long switchDelayTicks, @NonNull Plugin plugin) {
+        this(boards, switchDelayTicks, plugin, false);
+    }
+
+    /**
+     * Creates a new board pager.
+     *
+     * @param boards           - list of boards to use, without viewers if pages are preloaded
+     * @param switchDelayTicks - delay between page switches in ticks (if value is 0, pages will not be switched automatically)
+     * @param plugin           - plugin instance
+     * @param preloadPages     - whether all pages are kept on the client, see {@link #isPreloadPages()}
+     */
+    public BoardPager(@NonNull List<Board<R, P>> boards, long switchDelayTicks, @NonNull Plugin plugin,
+                      boolean preloadPages) {
+        Preconditions.checkArgument(!boards.isEmpty(), "Pager needs at least one page");
+        Preconditions.checkArgument(switchDelayTicks >= 0, "Switch delay cannot be negative");
+
         this.boards = boards;
-        this.viewers = new HashSet<>();
-        this.pageIterator = Iterators.cycle(boards);
-        this.currentPage = pageIterator.next();
+        this.switchDelayTicks = switchDelayTicks;
+        this.preloadPages = preloadPages;
+        this.scheduler = BoardScheduler.of(plugin);
+        this.foliaLib = scheduler.getFoliaLib();
 
-        if (switchDelayTicks > 0) {
-            this.switchTask = plugin.getServer().getScheduler().runTaskTimer(plugin, this::switchPage, switchDelayTicks, switchDelayTicks);
-        } else {
-            this.switchTask = null;
+        if (preloadPages) {
+            // teams of all pages exist on the client at once, so their entries must differ
+            for (int page = 0; page < boards.size(); page++) {
+                boards.get(page).setEntryVariant(page);
+            }
         }
     }
 
@@ -46,24 +91,80 @@ public class BoardPager<R, P> {
     }
 
     /**
-     * Switches to the next page.
-     * Note: this method is called automatically by the scheduler.
+     * Returns the first page, which new viewers see.
+     *
+     * @deprecated every viewer has an own page, use {@link #getCurrentPage(Player)}
      */
-    public void switchPage() {
-        currentPage.removeViewers();
+    @Deprecated
+    public Board<R, P> getCurrentPage() {
+        return boards.get(0);
+    }
 
-        currentPage = pageIterator.next();
+    /**
+     * Returns the page which the viewer sees.
+     *
+     * @param player - viewer
+     * @return current page of the viewer, null if the pager isn't shown to the player
+     */
+    @Nullable
+    public Board<R, P> getCurrentPage(@NonNull Player player) {
+        int page = getPage(player);
+        return page == -1 ? null : boards.get(page);
+    }
 
-        for (UUID viewer : viewers) {
-            Player player = Bukkit.getPlayer(viewer);
-            if (player != null) {
-                currentPage.addViewer(player);
-            }
+    /**
+     * Returns the index of the page which the viewer sees.
+     *
+     * @param player - viewer
+     * @return page index, -1 if the pager isn't shown to the player
+     */
+    public int getPage(@NonNull Player player) {
+        PageCursor cursor = viewers.get(player.getUniqueId());
+        return cursor == null ? -1 : cursor.page;
+    }
+
+    /**
+     * Switches all viewers to their next page.
+     * Note: pages are also switched automatically by the scheduler, separately for each viewer.
+     */
+    public void switchPage() {
+        for (PageCursor cursor : viewers.values()) {
+            // phases are kept, so the next automatic switches stay spread
+            turnPage(cursor, page -> page + 1, false);
         }
     }
 
+    /**
+     * Switches the viewer to the next page, the next automatic switch comes a full switch delay later.
+     *
+     * @param player - viewer
+     */
+    public void nextPage(@NonNull Player player) {
+        turnPage(player, page -> page + 1);
+    }
+
+    /**
+     * Switches the viewer to the previous page, the next automatic switch comes a full switch delay later.
+     *
+     * @param player - viewer
+     */
+    public void previousPage(@NonNull Player player) {
+        turnPage(player, page -> page - 1);
+    }
+
+    /**
+     * Switches the viewer to the page, the next automatic switch comes a full switch delay later.
+     *
+     * @param player - viewer
+     * @param page   - page index
+     */
+    public void setPage(@NonNull Player player, int page) {
+        Preconditions.checkElementIndex(page, boards.size(), "Page");
+        turnPage(player, current -> page);
+    }
+
     public Set<UUID> getViewers() {
-        return Collections.unmodifiableSet(viewers);
+        return Collections.unmodifiableSet(viewers.keySet());
     }
 
     public List<Board<R, P>> getBoards() {
@@ -88,26 +189,60 @@ public class BoardPager<R, P> {
      * Note: pager object will be unusable after this method call.
      */
     public void destroy() {
-        if (switchTask != null) {
-            switchTask.cancel();
+        for (PageCursor cursor : viewers.values()) {
+            cursor.removed = true;
+            scheduler.cancel(cursor);
         }
+
         for (Board<R, P> board : boards) {
             board.destroy();
         }
         boards.clear();
         viewers.clear();
+        updateQuitListener();
     }
 
     /**
-     * Start showing all boards in pager to the player.
+     * Start showing all boards in pager to the player, beginning with the first page.
      *
      * @param player - player to show boards to
      */
     public void show(@NonNull Player player) {
-        synchronized (viewers) {
-            viewers.add(player.getUniqueId());
+        PageCursor cursor = new PageCursor(player.getUniqueId());
+
+        if (viewers.putIfAbsent(cursor.uniqueId, cursor) != null) {
+            return;
+        }
+
+        updateQuitListener();
+
+        if (foliaLib.isFolia() && !foliaLib.getScheduler().isOwnedByCurrentRegion(player)) {
+            foliaLib.getScheduler().runAtEntity(player, task -> show0(player, cursor));
+        } else {
+            show0(player, cursor);
+        }
+
+        if (switchDelayTicks > 0) {
+            // the first switch comes in the phase of the viewer, so a wave of joins is spread over the delay
+            long delay = Math.floorMod(cursor.phase - scheduler.getTick() - 1, switchDelayTicks) + 1;
+            scheduler.schedule(cursor, delay);
+        }
+    }
+
+    private void show0(Player player, PageCursor cursor) {
+        synchronized (cursor) {
+            if (cursor.removed) {
+                return;
+            }
+
+            if (preloadPages) {
+                for (int page = 1; page < boards.size(); page++) {
+                    boards.get(page).addViewer(player, false);
+                }
+            }
+
+            boards.get(0).addViewer(player);
         }
-        currentPage.addViewer(player);
     }
 
     /**
@@ -116,9 +251,141 @@ public class BoardPager<R, P> {
      * @param player - player to stop showing boards to
      */
     public void hide(@NonNull Player player) {
-        synchronized (viewers) {
-            viewers.remove(player.getUniqueId());
+        PageCursor cursor = viewers.remove(player.getUniqueId());
+
+        if (cursor == null) {
+            return;
+        }
+
+        updateQuitListener();
+
+        synchronized (cursor) {
+            cursor.removed = true;
+
+            if (preloadPages) {
+                for (Board<R, P> board : boards) {
+                    board.removeViewer(player);
+                }
+            } else {
+                boards.get(cursor.page).removeViewer(player);
+            }
+        }
+
+        scheduler.cancel(cursor);
+    }
+
+    private void quit(UUID uniqueId) {
+        PageCursor cursor = viewers.get(uniqueId);
+
+        if (cursor != null) {
+            // boards drop the viewer by themselves
+            remove(cursor);
+        }
+    }
+
+    private void remove(PageCursor cursor) {
+        if (viewers.remove(cursor.uniqueId, cursor)) {
+            updateQuitListener();
+        }
+
+        synchronized (cursor) {
+            cursor.removed = true;
+        }
+
+        scheduler.cancel(cursor);
+    }
+
+    private void updateQuitListener() {
+        // emptiness is checked again under the lock, so concurrent first show and last hide can't lose the listener
+        synchronized (listenerLock) {
+            if (viewers.isEmpty()) {
+                ChannelInjector.IMP.removeQuitListener(quitListener);
+            } else {
+                ChannelInjector.IMP.addQuitListener(quitListener);
+            }
+        }
+    }
+
+    private void turnPage(Player player, IntUnaryOperator turn) {
+        PageCursor cursor = viewers.get(player.getUniqueId());
+
+        if (cursor != null) {
+            turnPage(cursor, turn, true);
+        }
+    }
+
+    private void turnPage(PageCursor cursor, IntUnaryOperator turn, boolean restartDelay) {
+        Player player = Bukkit.getPlayer(cursor.uniqueId);
+
+        if (player == null) {
+            remove(cursor);
+            return;
+        }
+
+        if (restartDelay && switchDelayTicks > 0) {
+            scheduler.reschedule(cursor, switchDelayTicks);
+        }
+
+        if (foliaLib.isFolia() && !foliaLib.getScheduler().isOwnedByCurrentRegion(player)) {
+            foliaLib.getScheduler().runAtEntity(player, task -> turnPage0(player, cursor, turn));
+        } else {
+            turnPage0(player, cursor, turn);
+        }
+    }
+
+    private void turnPage0(Player player, PageCursor cursor, IntUnaryOperator turn) {
+        synchronized (cursor) {
+            if (cursor.removed) {
+                return;
+            }
+
+            int previous = cursor.page;
+            int page = Math.floorMod(turn.applyAsInt(previous), boards.size());
+
+            if (page == previous) {
+                return;
+            }
+
+            cursor.page = page;
+
+            if (preloadPages) {
+                boards.get(page).display(player);
+            } else {
+                boards.get(previous).removeViewer(player);
+                boards.get(page).addViewer(player);
+            }
+        }
+    }
+
+    /**
+     * Page and switch deadline of a single viewer.
+     */
+    private final class PageCursor extends BoardScheduler.Timer {
+
+        final UUID uniqueId;
+        final int phase;
+        // written under the monitor of this
+        volatile int page;
+        volatile boolean removed;
+
+        PageCursor(UUID uniqueId) {
+            // a cursor of a pager without automatic switches is never scheduled
+            super(Math.max(switchDelayTicks, 1));
+            this.uniqueId = uniqueId;
+
+            // spread the bits, UUID hash codes of offline players aren't random enough
+            int hash = uniqueId.hashCode() * 0x9E3779B9;
+            this.phase = (hash ^ (hash >>> 16)) & Integer.MAX_VALUE;
+        }
+
+        @Override
+        protected void run() {
+            if (removed) {
+                // hidden while its first switch was being scheduled
+                scheduler.cancel(this);
+            } else {
+                turnPage(this, page -> page + 1, false);
+            }
         }
-        currentPage.removeViewer(player);
     }
-}
\ No newline at end of file
+}
@@ -1,60 +1,33 @@
 package me.eternalhuman.packetboard.protocol;
 
-import com.google.common.collect.MapMaker;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import lombok.NonNull;
 import lombok.SneakyThrows;
 import me.eternalhuman.packetboard.util.Reflection;
+import me.eternalhuman.packetboard.util.version.VersionUtil;
 import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.plugin.Plugin;
 
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 public class ChannelInjector {
 
-    private static final MethodHandle GET_PLAYER_HANDLE;
-    private static final MethodHandle GET_CONNECTION;
-    private static final MethodHandle GET_MANAGER;
-    private static final MethodHandle GET_CHANNEL;
-
-    static {
-        MethodHandles.Lookup lookup = MethodHandles.lookup();
-
-        try {
-            GET_PLAYER_HANDLE = lookup.unreflect(
-                    Reflection.getMethod("{obc}.entity.CraftPlayer", "getHandle").handle());
-
-            Class<?> entityPlayer = Reflection.getClass(
-                    "net.minecraft.server.level.EntityPlayer",
-                    "net.minecraft.server.level.ServerPlayer",
-                    "{nms}.EntityPlayer");
-
-            Class<?> playerConnection = Reflection.getClass(
-                    "{nms}.PlayerConnection",
-                    "net.minecraft.server.network.PlayerConnection",
-                    "net.minecraft.server.network.ServerGamePacketListenerImpl");
-            Class<?> networkManager = Reflection.getClass(
-                    "{nms}.NetworkManager",
-                    "net.minecraft.network.NetworkManager",
-                    "net.minecraft.network.Connection");
-
-            GET_CONNECTION = lookup.unreflectGetter(
-                    Reflection.getField(entityPlayer, playerConnection, 0).handle());
-            GET_MANAGER = lookup.unreflectGetter(
-                    Reflection.getField(playerConnection, networkManager, 0).handle());
-
-            GET_CHANNEL = lookup.unreflectGetter(
-                    Reflection.getField(networkManager, Channel.class, 0).handle());
-
-        } catch (Throwable throwable) {
-            throw new ExceptionInInitializerError(throwable);
-        }
-    }
-
-    // weakValues means that channel will be removed from map when player disconnects
-    private final Map<String, Channel> channelLookup = new MapMaker().weakValues().makeMap();
+    // sessions are dropped on quit or as soon as their channel is closed
+    private final Map<UUID, ViewerSession> sessions = new ConcurrentHashMap<>();
+    private final Set<Consumer<UUID>> quitListeners = ConcurrentHashMap.newKeySet();
+    private volatile Plugin listenerOwner;
 
     public static final ChannelInjector IMP = new ChannelInjector();
 
@@ -62,22 +35,134 @@ public class ChannelInjector {
         // Seal class
     }
 
-    @SneakyThrows
-    public Channel getChannel(Player player) {
-        Channel channel = channelLookup.get(player.getName());
+    /**
+     * Registers join/quit listener which resolves and invalidates viewer sessions.
+     * Only the first enabled plugin registers the listener, further calls are no-op.
+     *
+     * @param plugin - plugin to register listener with
+     */
+    public synchronized void registerListener(@NonNull Plugin plugin) {
+        if (listenerOwner != null && listenerOwner.isEnabled()) {
+            return;
+        }
+
+        plugin.getServer().getPluginManager().registerEvents(new SessionListener(), plugin);
+        listenerOwner = plugin;
+    }
 
-        // Lookup channel again
-        if (channel == null || !channel.isOpen()) {
-            Object connection = GET_CONNECTION.invoke(GET_PLAYER_HANDLE.invoke(player));
-            Object manager = GET_MANAGER.invoke(connection);
+    public ViewerSession getSession(@NonNull Player player) {
+        ViewerSession session = sessions.get(player.getUniqueId());
 
-            channelLookup.put(player.getName(), channel = (Channel) GET_CHANNEL.invoke(manager));
+        // Resolve session again
+        if (session == null || !session.isActive()) {
+            session = resolveSession(player);
         }
 
-        return channel;
+        return session;
+    }
+
+    /**
+     * Adds listener which is called with the id of every player who quits the server.
+     * Listeners are called by the shared listener, see {@link #registerListener(Plugin)}.
+     *
+     * @param listener - quit listener
+     */
+    public void addQuitListener(@NonNull Consumer<UUID> listener) {
+        quitListeners.add(listener);
+    }
+
+    public void removeQuitListener(@NonNull Consumer<UUID> listener) {
+        quitListeners.remove(listener);
+    }
+
+    public void invalidate(@NonNull UUID uniqueId) {
+        sessions.remove(uniqueId);
+    }
+
+    public Channel getChannel(Player player) {
+        return getSession(player).getChannel();
     }
 
     public ChannelFuture sendPacket(@NonNull Player player, @NonNull Object packet) {
         return getChannel(player).writeAndFlush(packet);
     }
+
+    @SneakyThrows
+    private ViewerSession resolveSession(@NonNull Player player) {
+        Object connection = Handles.GET_CONNECTION.invoke(Handles.GET_PLAYER_HANDLE.invoke(player));
+        Object manager = Handles.GET_MANAGER.invoke(connection);
+        Channel channel = (Channel) Handles.GET_CHANNEL.invoke(manager);
+
+        UUID uniqueId = player.getUniqueId();
+        ViewerSession session = new ViewerSession(uniqueId, VersionUtil.getPlayerVersion(uniqueId), channel);
+
+        sessions.put(uniqueId, session);
+        channel.closeFuture().addListener(future -> sessions.remove(uniqueId, session));
+
+        return session;
+    }
+
+    /**
+     * Server internals which resolve the channel of a player, looked up once the first session is resolved.
+     */
+    private static final class Handles {
+
+        static final MethodHandle GET_PLAYER_HANDLE;
+        static final MethodHandle GET_CONNECTION;
+        static final MethodHandle GET_MANAGER;
+        static final MethodHandle GET_CHANNEL;
+
+        static {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+            try {
+                GET_PLAYER_HANDLE = lookup.unreflect(
+                        Reflection.getMethod("{obc}.entity.CraftPlayer", "getHandle").handle());
+
+                Class<?> entityPlayer = Reflection.getClass(
+                        "net.minecraft.server.level.EntityPlayer",
+                        "net.minecraft.server.level.ServerPlayer",
+                        "{nms}.EntityPlayer");
+
+                Class<?> playerConnection = Reflection.getClass(
+                        "{nms}.PlayerConnection",
+                        "net.minecraft.server.network.PlayerConnection",
+                        "net.minecraft.server.network.ServerGamePacketListenerImpl");
+                Class<?> networkManager = Reflection.getClass(
+                        "{nms}.NetworkManager",
+                        "net.minecraft.network.NetworkManager",
+                        "net.minecraft.network.Connection");
+
+                GET_CONNECTION = lookup.unreflectGetter(
+                        Reflection.getField(entityPlayer, playerConnection, 0).handle());
+                GET_MANAGER = lookup.unreflectGetter(
+                        Reflection.getField(playerConnection, networkManager, 0).handle());
+
+                GET_CHANNEL = lookup.unreflectGetter(
+                        Reflection.getField(networkManager, Channel.class, 0).handle());
+
+            } catch (Throwable throwable) {
+                throw new ExceptionInInitializerError(throwable);
+            }
+        }
+    }
+
+    private final class SessionListener implements Listener {
+
+        @EventHandler(priority = EventPriority.LOWEST)
+        public void onJoin(PlayerJoinEvent event) {
+            resolveSession(event.getPlayer());
+        }
+
+        @EventHandler(priority = EventPriority.MONITOR)
+        public void onQuit(PlayerQuitEvent event) {
+            UUID uniqueId = event.getPlayer().getUniqueId();
+
+            invalidate(uniqueId);
+
+            for (Consumer<UUID> listener : quitListeners) {
+                listener.accept(uniqueId);
+            }
+        }
+    }
 }
@@ -0,0 +1,159 @@
+package me.eternalhuman.packetboard.protocol;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Coalesces packets which the current thread sends during one update cycle: while a batch is open,
+ * {@link ViewerSession#send} writes packets with a void promise and doesn't flush, and every touched channel
+ * is flushed once when the outermost batch is closed.
+ * <p>
+ * Optionally packets of each viewer are wrapped into a bundle, so the client applies the whole update at once
+ * instead of re-sorting the sidebar after every packet. Bundled packets are queued per viewer and written
+ * together with their delimiters by a single task on the event loop of the channel when the batch is closed,
+ * so a bundle is never left open on a channel while other viewers are rendered, and packets which the server
+ * sends meanwhile never get into it.
+ * <p>
+ * In event loop mode packets aren't written by the current thread at all: they are queued per viewer, and
+ * when the batch is closed each viewer gets a single task on its channel's event loop, which encodes
+ * the queued packets from the thread-local buffer pool of that loop, writes and flushes them.
+ * <p>
+ * Batches are thread-local and can be nested, e.g. a re-layout which updates all lines inside a line removal:
+ * <pre>{@code
+ * try (PacketBatch ignored = PacketBatch.begin()) {
+ *     // send packets
+ * }
+ * }</pre>
+ */
+public final class PacketBatch implements AutoCloseable {
+
+    private static final ThreadLocal<PacketBatch> LOCAL = ThreadLocal.withInitial(PacketBatch::new);
+    // returned when batching is disabled, closing it does nothing
+    private static final PacketBatch NONE = new PacketBatch();
+
+    private final Set<ViewerSession> sessions = Collections.newSetFromMap(new IdentityHashMap<>());
+    // packets or their encoders queued for the event loops or bundles, in order
+    private final Map<ViewerSession, List<Object>> queued = new IdentityHashMap<>();
+    private int depth;
+    private boolean bundle;
+    private boolean eventLoop;
+
+    private PacketBatch() {
+
+    }
+
+    /**
+     * Opens the batch of the current thread, or enters the already open one.
+     *
+     * @return batch which must be closed at the end of the cycle
+     */
+    public static PacketBatch begin() {
+        PacketBatch batch = LOCAL.get();
+        batch.depth++;
+        return batch;
+    }
+
+    /**
+     * Opens the batch if batching is enabled.
+     *
+     * @param enabled - whether batching is enabled
+     * @return batch which must be closed at the end of the cycle
+     */
+    public static PacketBatch begin(boolean enabled) {
+        return enabled ? begin() : NONE;
+    }
+
+    /**
+     * Opens the batch if batching is enabled, wrapping packets of each viewer into a bundle
+     * if the server supports bundles. Bundling is decided by the outermost batch.
+     *
+     * @param enabled - whether batching is enabled
+     * @param bundle  - whether packets should be bundled
+     * @return batch which must be closed at the end of the cycle
+     */
+    public static PacketBatch begin(boolean enabled, boolean bundle) {
+        return begin(enabled, bundle, false);
+    }
+
+    /**
+     * Opens the batch if batching is enabled. Bundling and event loop mode are decided by the outermost batch.
+     *
+     * @param enabled   - whether batching is enabled
+     * @param bundle    - whether packets should be bundled
+     * @param eventLoop - whether packets should be encoded and written by the event loops of the viewers
+     * @return batch which must be closed at the end of the cycle
+     */
+    public static PacketBatch begin(boolean enabled, boolean bundle, boolean eventLoop) {
+        if (!enabled) {
+            return NONE;
+        }
+
+        PacketBatch batch = LOCAL.get();
+
+        if (batch.depth++ == 0) {
+            batch.bundle = bundle && ProtocolProfile.server().isBundles();
+            batch.eventLoop = eventLoop;
+        }
+
+        return batch;
+    }
+
+    static @Nullable PacketBatch current() {
+        PacketBatch batch = LOCAL.get();
+        return batch.depth > 0 ? batch : null;
+    }
+
+    /**
+     * Returns whether packets sent by the current thread are encoded later on the event loops.
+     * Encoders of such packets must not call anything which has to run on the server threads.
+     *
+     * @return whether encoding is deferred
+     */
+    public static boolean isDeferred() {
+        PacketBatch batch = current();
+        return batch != null && batch.eventLoop;
+    }
+
+    boolean isEventLoop() {
+        return eventLoop;
+    }
+
+    boolean isBundle() {
+        return bundle;
+    }
+
+    void queue(ViewerSession session, Object packet) {
+        queued.computeIfAbsent(session, key -> new ArrayList<>()).add(packet);
+    }
+
+    void add(ViewerSession session) {
+        sessions.add(session);
+    }
+
+    @Override
+    public void close() {
+        if (this == NONE || --depth > 0) {
+            return;
+        }
+
+        try {
+            for (ViewerSession session : sessions) {
+                session.flush();
+            }
+
+            for (Map.Entry<ViewerSession, List<Object>> entry : queued.entrySet()) {
+                entry.getKey().writeOnEventLoop(entry.getValue(), bundle);
+            }
+        } finally {
+            sessions.clear();
+            queued.clear();
+            bundle = false;
+            eventLoop = false;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package me.eternalhuman.packetboard.protocol;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.util.ReferenceCountUtil;
+import lombok.NonNull;
+import lombok.Value;
+import me.eternalhuman.packetboard.util.lang.ThrowingSupplier;
+
+import javax.annotation.Nullable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Per-broadcast cache of values and encoded packets which don't depend on the viewer.
+ * <p>
+ * Everything is keyed by owner (line, objective), kind of the payload and optionally its variant such as
+ * client protocol profile, so viewers of the same profile share one encoded buffer: every viewer receives its own
+ * {@link ByteBuf#retainedDuplicate()} view and the original is released by {@link #release()}.
+ * <p>
+ * It lives for a single broadcast and is thread-safe, so viewers of one broadcast can be rendered
+ * on different threads. A value can be computed more than once if threads race for it.
+ */
+public final class PacketFanout {
+
+    private final Map<Key, Object> values = new ConcurrentHashMap<>();
+    private final Map<Key, ByteBuf> packets = new ConcurrentHashMap<>();
+
+    @SuppressWarnings("unchecked")
+    public <T> T compute(@NonNull Object owner, int kind, @Nullable Object variant,
+                         @NonNull ThrowingSupplier<T, Throwable> supplier) throws Throwable {
+        Key key = new Key(owner, kind, variant);
+        Object value = values.get(key);
+
+        if (value == null) {
+            value = supplier.get();
+
+            if (value != null) {
+                Object previous = values.putIfAbsent(key, value);
+                value = previous != null ? previous : value;
+            }
+        }
+
+        return (T) value;
+    }
+
+    /**
+     * Returns the view of a packet which is encoded only once for this key.
+     * The returned buffer must be released by the caller (writing it to a channel does it).
+     */
+    public ByteBuf encode(@NonNull Object owner, int kind, @Nullable Object variant,
+                          @NonNull Supplier<ByteBuf> encoder) {
+        return packets.computeIfAbsent(new Key(owner, kind, variant), key -> encoder.get()).retainedDuplicate();
+    }
+
+    public void release() {
+        packets.values().forEach(ReferenceCountUtil::release);
+        packets.clear();
+        values.clear();
+    }
+
+    @Value
+    private static class Key {
+        Object owner;
+        int kind;
+        Object variant;
+    }
+}
@@ -1,7 +1,5 @@
 package me.eternalhuman.packetboard.protocol;
 
-import me.eternalhuman.packetboard.util.version.VersionUtil;
-
 import static me.eternalhuman.packetboard.protocol.ProtocolConstants.map;
 
 
@@ -77,35 +75,67 @@ public enum PacketIds {
             map(ProtocolConstants.MINECRAFT_1_21_2, 0x5C),
             map(ProtocolConstants.MINECRAFT_1_21_5, 0x5B),
             map(ProtocolConstants.MINECRAFT_1_21_9, 0x60)
+    ),
+    BUNDLE_DELIMITER( //Bundle Delimiter packet
+            map(ProtocolConstants.MINECRAFT_1_19_4, 0x00)
     );
 
-    private final ProtocolConstants.ProtocolMapping[] mappings;
+    // dense lookup table indexed by (protocol - MINIMUM_SUPPORTED_VERSION), -1 when the packet doesn't exist yet
+    private final int[] packetIds;
 
     PacketIds(ProtocolConstants.ProtocolMapping... mappings) {
-        this.mappings = mappings;
+        this.packetIds = createLookup(mappings);
+    }
+
+    private static int[] createLookup(ProtocolConstants.ProtocolMapping[] mappings) {
+        int[] lookup = new int[ProtocolConstants.MAXIMUM_SUPPORTED_VERSION - ProtocolConstants.MINIMUM_SUPPORTED_VERSION + 1];
+        int mapping = -1;
+
+        for (int index = 0; index < lookup.length; index++) {
+            int protocol = ProtocolConstants.MINIMUM_SUPPORTED_VERSION + index;
+
+            while (mapping + 1 < mappings.length && mappings[mapping + 1].getProtocol() <= protocol) {
+                mapping++;
+            }
+
+            lookup[index] = mapping == -1 ? -1 : mappings[mapping].getPacketId();
+        }
+
+        return lookup;
     }
 
     public int getServerPacketId() {
-        return getPacketId(VersionUtil.SERVER_VERSION);
+        ProtocolProfile server = ProtocolProfile.server();
+        int packetId = server.getPacketId(this);
+
+        if (packetId == -1) {
+            throw new IllegalArgumentException("Unsupported protocol version: " + server.getProtocolVersion());
+        }
+
+        return packetId;
     }
 
     public int getPacketId(int protocolVersion) {
+        int packetId = findPacketId(protocolVersion);
 
-        for (int protocol = ProtocolConstants.MINIMUM_SUPPORTED_VERSION;
-             protocol <= ProtocolConstants.MAXIMUM_SUPPORTED_VERSION; protocol++) {
-            int index = 0;
-
-            for (ProtocolConstants.ProtocolMapping mapping : mappings) {
-                if (mapping.getProtocol() == protocol
-                        && mapping.getProtocol() <= protocolVersion
-                        && (index == mappings.length - 1 || mappings[index + 1].getProtocol() > protocolVersion))
-                    return mapping.getPacketId();
+        if (packetId == -1) {
+            throw new IllegalArgumentException("Unsupported protocol version: " + protocolVersion);
+        }
 
-                index++;
-            }
+        return packetId;
+    }
 
+    /**
+     * Same as {@link #getPacketId(int)}, but returns -1 instead of throwing
+     * when the packet doesn't exist in the given protocol version.
+     */
+    int findPacketId(int protocolVersion) {
+        if (protocolVersion < ProtocolConstants.MINIMUM_SUPPORTED_VERSION) {
+            return -1;
         }
 
-        throw new IllegalArgumentException("Unsupported protocol version: " + protocolVersion);
+        // newer protocols reuse the latest known mapping
+        return packetIds[Math.min(protocolVersion, ProtocolConstants.MAXIMUM_SUPPORTED_VERSION)
+                - ProtocolConstants.MINIMUM_SUPPORTED_VERSION];
     }
 }
@@ -0,0 +1,74 @@
+package me.eternalhuman.packetboard.protocol;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import lombok.NonNull;
+import me.eternalhuman.packetboard.util.buffer.ByteBufNetOutput;
+import me.eternalhuman.packetboard.util.buffer.NetOutput;
+
+import javax.annotation.Nullable;
+import java.util.function.Consumer;
+
+/**
+ * Invariant bytes of a packet which are encoded once: everything before its variable part (prefix)
+ * and everything after it (suffix). Building the packet is copying the prefix, writing the variable part
+ * and copying the suffix.
+ * <p>
+ * Templates are immutable and can be shared between threads.
+ */
+public final class PacketTemplate {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final byte[] prefix;
+    private final byte[] suffix;
+
+    private PacketTemplate(byte[] prefix, byte[] suffix) {
+        this.prefix = prefix;
+        this.suffix = suffix;
+    }
+
+    /**
+     * Encodes the template.
+     *
+     * @param prefix - writer of the bytes before variable part
+     * @param suffix - writer of the bytes after variable part, may be null if there are none
+     * @return template
+     */
+    public static PacketTemplate encode(@NonNull Consumer<NetOutput> prefix, @Nullable Consumer<NetOutput> suffix) {
+        return new PacketTemplate(encode(prefix), suffix == null ? EMPTY : encode(suffix));
+    }
+
+    private static byte[] encode(Consumer<NetOutput> writer) {
+        ByteBuf buf = Unpooled.buffer();
+
+        try {
+            writer.accept(new ByteBufNetOutput(buf));
+            return ByteBufUtil.getBytes(buf);
+        } finally {
+            buf.release();
+        }
+    }
+
+    public void writePrefix(@NonNull ByteBuf buf) {
+        buf.writeBytes(prefix);
+    }
+
+    public void writeSuffix(@NonNull ByteBuf buf) {
+        buf.writeBytes(suffix);
+    }
+
+    /**
+     * Creates the packet of a template without variable part.
+     *
+     * @param session - viewer to allocate the packet for
+     * @return packet
+     */
+    public ByteBuf create(@NonNull ViewerSession session) {
+        ByteBuf buf = session.allocate(prefix.length + suffix.length);
+        buf.writeBytes(prefix);
+        buf.writeBytes(suffix);
+        return buf;
+    }
+}
@@ -0,0 +1,125 @@
+package me.eternalhuman.packetboard.protocol;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import me.eternalhuman.packetboard.util.version.VersionUtil;
+
+/**
+ * Precomputed view of a single protocol version: packet ids and the wire format features
+ * which the packet builders branch on. Profiles are built once at class init, so resolving one
+ * is a plain array lookup.
+ * <p>
+ * Packets are always encoded in the server's protocol (ViaVersion translates them for other clients),
+ * so the {@link #server() server profile} decides the wire format, while a client's profile only
+ * decides how the text has to be limited.
+ */
+@Getter
+public final class ProtocolProfile {
+
+    private static final PacketIds[] PACKETS = PacketIds.values();
+    private static final ProtocolProfile[] PROFILES = createProfiles();
+
+    private final int protocolVersion;
+    @Getter(AccessLevel.NONE)
+    private final int[] packetIds;
+
+    /**
+     * JSON chat components for team prefixes/display names, no more 16 characters limits (1.13+)
+     */
+    private final boolean jsonText;
+    /**
+     * VarInt score actions, team colors and objective render types (1.13+)
+     */
+    private final boolean varIntEnums;
+    /**
+     * Packets between two bundle delimiters are applied by the client in the same tick (1.19.4+)
+     */
+    private final boolean bundles;
+    /**
+     * Chat components are sent as network NBT instead of JSON strings (1.20.3+)
+     */
+    private final boolean nbtComponents;
+    /**
+     * Objectives and scores accept a number format (1.20.3+)
+     */
+    private final boolean numberFormats;
+    /**
+     * Scores are removed with a separate Reset Score packet (1.20.3+)
+     */
+    private final boolean resetScorePacket;
+    /**
+     * Team name tag visibility and collision rule are VarInt enums instead of strings (1.21.5+)
+     */
+    private final boolean enumTeamVisibility;
+
+    private ProtocolProfile(int protocolVersion) {
+        this.protocolVersion = protocolVersion;
+        this.packetIds = new int[PACKETS.length];
+
+        for (PacketIds packet : PACKETS) {
+            this.packetIds[packet.ordinal()] = packet.findPacketId(protocolVersion);
+        }
+
+        this.jsonText = protocolVersion >= ProtocolConstants.MINECRAFT_1_13;
+        this.varIntEnums = protocolVersion >= ProtocolConstants.MINECRAFT_1_13;
+        this.bundles = protocolVersion >= ProtocolConstants.MINECRAFT_1_19_4;
+        this.nbtComponents = protocolVersion >= ProtocolConstants.MINECRAFT_1_20_3;
+        this.numberFormats = protocolVersion >= ProtocolConstants.MINECRAFT_1_20_3;
+        this.resetScorePacket = protocolVersion >= ProtocolConstants.MINECRAFT_1_20_3;
+        this.enumTeamVisibility = protocolVersion >= ProtocolConstants.MINECRAFT_1_21_5;
+    }
+
+    private static ProtocolProfile[] createProfiles() {
+        ProtocolProfile[] profiles = new ProtocolProfile[
+                ProtocolConstants.MAXIMUM_SUPPORTED_VERSION - ProtocolConstants.MINIMUM_SUPPORTED_VERSION + 1];
+
+        for (int index = 0; index < profiles.length; index++) {
+            profiles[index] = new ProtocolProfile(ProtocolConstants.MINIMUM_SUPPORTED_VERSION + index);
+        }
+
+        return profiles;
+    }
+
+    /**
+     * Returns the profile of given protocol version.
+     * Versions outside of the supported range are clamped to the closest supported one.
+     *
+     * @param protocolVersion - protocol version
+     * @return protocol profile
+     */
+    public static ProtocolProfile of(int protocolVersion) {
+        int index = Math.max(ProtocolConstants.MINIMUM_SUPPORTED_VERSION,
+                Math.min(protocolVersion, ProtocolConstants.MAXIMUM_SUPPORTED_VERSION));
+
+        return PROFILES[index - ProtocolConstants.MINIMUM_SUPPORTED_VERSION];
+    }
+
+    /**
+     * Returns the profile of the running server.
+     *
+     * @return server protocol profile
+     */
+    public static ProtocolProfile server() {
+        return ServerProfileHolder.PROFILE;
+    }
+
+    /**
+     * Returns the packet id in this protocol version.
+     *
+     * @param packet - packet
+     * @return packet id or -1 if this protocol version doesn't have such packet
+     */
+    public int getPacketId(PacketIds packet) {
+        return packetIds[packet.ordinal()];
+    }
+
+    @Override
+    public String toString() {
+        return "ProtocolProfile(" + protocolVersion + ")";
+    }
+
+    // Lazy holder, so profiles can be used without a running server (e.g. in tests)
+    private static final class ServerProfileHolder {
+        private static final ProtocolProfile PROFILE = of(VersionUtil.SERVER_VERSION);
+    }
+}
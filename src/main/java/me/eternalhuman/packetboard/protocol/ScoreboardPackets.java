@@ -5,12 +5,11 @@ import com.google.common.base.Preconditions;
 import com.google.common.base.Splitter;
 import io.netty.buffer.ByteBuf;
 import lombok.NonNull;
-import lombok.SneakyThrows;
 import lombok.experimental.UtilityClass;
 import me.eternalhuman.packetboard.text.TextProvider;
 import me.eternalhuman.packetboard.util.buffer.ByteBufNetOutput;
+import me.eternalhuman.packetboard.util.buffer.NbtComponentCache;
 import me.eternalhuman.packetboard.util.buffer.NetOutput;
-import me.eternalhuman.packetboard.util.version.VersionUtil;
 import org.bukkit.ChatColor;
 import org.bukkit.entity.Player;
 
@@ -28,12 +27,55 @@ public class ScoreboardPackets {
     public final int TEAM_REMOVED = 1;
     public final int TEAM_UPDATED = 2;
 
+    /**
+     * Returns the invisible score entry of the line: the color code of its index, followed by the color codes
+     * of the hexadecimal digits of the variant if it isn't 0. Teams own their entries on the client regardless
+     * of the objective, so boards which exist on the same client at once need different variants.
+     *
+     * @param index   - line index
+     * @param variant - entry variant, not negative
+     * @return score entry
+     */
+    public String entry(int index, int variant) {
+        Preconditions.checkArgument(variant >= 0, "Entry variant cannot be negative");
+
+        if (variant == 0) {
+            return COLORS[index].toString();
+        }
+
+        StringBuilder entry = new StringBuilder(COLORS[index].toString());
+
+        do {
+            entry.append(COLORS[variant & 0xF]);
+            variant >>>= 4;
+        } while (variant != 0);
+
+        return entry.toString();
+    }
+
     public <R> ByteBuf createTeamPacket(int mode, int index,
                                         @NonNull String teamName,
                                         @NonNull Player player,
                                         R text,
                                         @NonNull TextProvider<R> textProvider) {
-        return createTeamPacket(mode, index, teamName, VersionUtil.SERVER_VERSION, player, text, textProvider);
+        return createTeamPacket(mode, index, teamName, ProtocolProfile.server(), player, text, textProvider);
+    }
+
+    /**
+     * Renders the text in the form which team packet expects for this client:
+     * JSON message if both client and server support JSON texts, legacy message otherwise.
+     *
+     * @param client   - client protocol profile
+     * @param player   - player to render text for
+     * @param text     - text to render
+     * @param provider - text provider
+     * @return rendered text
+     */
+    public <R> String renderText(@NonNull ProtocolProfile client, @NonNull Player player,
+                                 @NonNull R text, @NonNull TextProvider<R> provider) {
+        return client.isJsonText() && ProtocolProfile.server().isJsonText()
+                ? provider.asJsonMessage(player, text)
+                : provider.asLegacyMessage(player, text);
     }
 
     public <R> ByteBuf createScorePacket(@NonNull Player player,
@@ -44,124 +86,276 @@ public class ScoreboardPackets {
                                          TextProvider<R> textProvider,
                                          @Nullable ScoreNumberFormat numberFormat,
                                          @Nullable Function<Player, R> scoreNumberFormatter) {
-        ByteBuf buf = ChannelInjector.IMP.getChannel(player).alloc().buffer();
+        String numberFormatJson = null;
+
+        if (ProtocolProfile.server().isNumberFormats() && action != 1
+                && numberFormat != null && scoreNumberFormatter != null) {
+            numberFormatJson = textProvider.asJsonMessage(player, scoreNumberFormatter.apply(player));
+        }
 
-        NetOutput output = new ByteBufNetOutput(buf);
+        return createScorePacket(ChannelInjector.IMP.getSession(player), action, objectiveName, score, index,
+                numberFormat, numberFormatJson);
+    }
+
+    public ByteBuf createScorePacket(@NonNull ViewerSession session,
+                                     int action,
+                                     String objectiveName,
+                                     int score,
+                                     int index,
+                                     @Nullable ScoreNumberFormat numberFormat,
+                                     @Nullable String numberFormatJson) {
+        PacketTemplate template = scoreTemplate(action, index, objectiveName, ProtocolProfile.server());
+
+        return createScorePacket(template, session, action, score, numberFormat, numberFormatJson);
+    }
+
+    /**
+     * Encodes the invariant part of score packet: everything up to the score value, or the whole packet
+     * if the score is removed.
+     *
+     * @param action        - 0 to update the score, 1 to remove it
+     * @param index         - line index
+     * @param objectiveName - objective name
+     * @param server        - server protocol profile
+     * @return score packet template
+     */
+    public PacketTemplate scoreTemplate(int action, int index, @NonNull String objectiveName,
+                                        @NonNull ProtocolProfile server) {
+        return scoreTemplate(action, entry(index, 0), objectiveName, server);
+    }
 
-        if (VersionUtil.SERVER_VERSION >= ProtocolConstants.MINECRAFT_1_20_3) {
-            if (action == 1) {
-                output.writeVarInt(PacketIds.RESET_SCORE.getServerPacketId());
-                output.writeString(ScoreboardPackets.COLORS[index].toString());
-                output.writeBoolean(true); // has objective name
+    /**
+     * Same as {@link #scoreTemplate(int, int, String, ProtocolProfile)} for an entry of {@link #entry}.
+     */
+    public PacketTemplate scoreTemplate(int action, @NonNull String entry, @NonNull String objectiveName,
+                                        @NonNull ProtocolProfile server) {
+        return PacketTemplate.encode(output -> {
+            if (server.isResetScorePacket()) {
+                if (action == 1) {
+                    output.writeVarInt(server.getPacketId(PacketIds.RESET_SCORE));
+                    output.writeString(entry);
+                    output.writeBoolean(true); // has objective name
+                    output.writeString(objectiveName);
+                    return;
+                }
+
+                output.writeVarInt(server.getPacketId(PacketIds.UPDATE_SCORE));
+                output.writeString(entry);
                 output.writeString(objectiveName);
-                return buf;
+                return;
             }
 
-            output.writeVarInt(PacketIds.UPDATE_SCORE.getServerPacketId());
-            output.writeString(ScoreboardPackets.COLORS[index].toString());
-            output.writeString(objectiveName);
-            output.writeVarInt(score);
+            output.writeVarInt(server.getPacketId(PacketIds.UPDATE_SCORE));
 
-            output.writeBoolean(false); // has display name
-            output.writeBoolean(numberFormat != null);
+            output.writeString(entry);
 
-            if (numberFormat != null) {
-                numberFormat.accept(output, scoreNumberFormatter == null ?
-                        null :
-                        textProvider.asJsonMessage(player, scoreNumberFormatter.apply(player)));
+            if (server.isVarIntEnums()) {
+                output.writeVarInt(action);
+            } else {
+                output.writeByte(action);
             }
 
-            return buf;
-        }
+            output.writeString(objectiveName);
+        }, null);
+    }
 
-        output.writeVarInt(PacketIds.UPDATE_SCORE.getServerPacketId());
+    /**
+     * Creates score packet from the template of {@link #scoreTemplate} with the same action.
+     */
+    public ByteBuf createScorePacket(@NonNull PacketTemplate template,
+                                     @NonNull ViewerSession session,
+                                     int action,
+                                     int score,
+                                     @Nullable ScoreNumberFormat numberFormat,
+                                     @Nullable String numberFormatJson) {
+        ByteBuf buf = session.allocate();
+        template.writePrefix(buf);
 
-        output.writeString(ScoreboardPackets.COLORS[index].toString());
+        if (action != 1) {
+            ByteBufNetOutput output = ByteBufNetOutput.acquire(buf);
 
-        if (VersionUtil.SERVER_VERSION >= ProtocolConstants.MINECRAFT_1_13) {
-            output.writeVarInt(action);
-        } else {
-            output.writeByte(action);
-        }
+            try {
+                output.writeVarInt(score);
 
-        output.writeString(objectiveName);
+                if (ProtocolProfile.server().isResetScorePacket()) {
+                    output.writeBoolean(false); // has display name
+                    output.writeBoolean(numberFormat != null);
 
-        if (action != 1) {
-            output.writeVarInt(score);
+                    if (numberFormat != null) {
+                        numberFormat.accept(output, numberFormatJson);
+                    }
+                }
+            } finally {
+                output.release();
+            }
         }
 
+        template.writeSuffix(buf);
         return buf;
     }
 
-    @SneakyThrows
     public <R> ByteBuf createTeamPacket(int mode, int index,
                                         @NonNull String teamName,
                                         int serverVersion,
                                         @NonNull Player player,
                                         R text,
                                         @NonNull TextProvider<R> provider) {
-        Preconditions.checkArgument(mode >= TEAM_CREATED && mode <= TEAM_UPDATED, "Invalid team mode");
+        return createTeamPacket(mode, index, teamName, ProtocolProfile.of(serverVersion), player, text, provider);
+    }
 
-        String teamEntry = COLORS[index].toString();
-        int clientVersion = VersionUtil.getPlayerVersion(player.getUniqueId());
+    public <R> ByteBuf createTeamPacket(int mode, int index,
+                                        @NonNull String teamName,
+                                        @NonNull ProtocolProfile server,
+                                        @NonNull Player player,
+                                        R text,
+                                        @NonNull TextProvider<R> provider) {
+        ViewerSession session = ChannelInjector.IMP.getSession(player);
+        String renderedText = mode == TEAM_REMOVED ? null : renderText(session.getProfile(), player, text, provider);
 
-        ByteBuf buf = ChannelInjector.IMP.getChannel(player).alloc().buffer();
+        return createTeamPacket(mode, index, teamName, server, session, player, renderedText, text, provider);
+    }
 
-        NetOutput packet = new ByteBufNetOutput(buf);
+    /**
+     * Creates team packet from the text which was already rendered by {@link #renderText}.
+     * If the component is passed, text provider may write it directly on servers with NBT components.
+     */
+    public <R> ByteBuf createTeamPacket(int mode, int index,
+                                        @NonNull String teamName,
+                                        @NonNull ProtocolProfile server,
+                                        @NonNull ViewerSession session,
+                                        @NonNull Player player,
+                                        @Nullable String renderedText,
+                                        @Nullable R component,
+                                        @NonNull TextProvider<R> provider) {
+        Preconditions.checkArgument(mode == TEAM_REMOVED || renderedText != null,
+                "Text cannot be null for team mode %s", mode);
 
-        // construct the packet on lowest level for future compatibility
+        PacketTemplate template = teamTemplate(mode, index, teamName, server, session.getProfile());
 
-        packet.writeVarInt(PacketIds.UPDATE_TEAMS.getServerPacketId());
+        return createTeamPacket(template, server, session, player,
+                mode == TEAM_REMOVED ? null : renderedText, component, provider);
+    }
 
-        packet.writeString(teamName);
-        packet.writeByte(mode);
+    /**
+     * Encodes the invariant part of team packet: everything before and after prefix and suffix,
+     * or the whole packet if the team is removed. The template depends only on whether the client
+     * supports JSON texts, so it can be shared by all such clients.
+     *
+     * @param mode     - team mode
+     * @param index    - line index
+     * @param teamName - team name
+     * @param server   - server protocol profile
+     * @param client   - client protocol profile
+     * @return team packet template
+     */
+    public PacketTemplate teamTemplate(int mode, int index, @NonNull String teamName,
+                                       @NonNull ProtocolProfile server, @NonNull ProtocolProfile client) {
+        return teamTemplate(mode, entry(index, 0), teamName, server, client);
+    }
 
-        if (mode == TEAM_REMOVED) {
-            return buf;
-        }
+    /**
+     * Same as {@link #teamTemplate(int, int, String, ProtocolProfile, ProtocolProfile)} for an entry
+     * of {@link #entry}.
+     */
+    public PacketTemplate teamTemplate(int mode, @NonNull String teamEntry, @NonNull String teamName,
+                                       @NonNull ProtocolProfile server, @NonNull ProtocolProfile client) {
+        Preconditions.checkArgument(mode >= TEAM_CREATED && mode <= TEAM_UPDATED, "Invalid team mode");
 
-        if (clientVersion >= ProtocolConstants.MINECRAFT_1_13) {
-            if (serverVersion >= ProtocolConstants.MINECRAFT_1_20_3) {
-                packet.writeComponent("{\"text\":\"\"}");
-            } else {
-                packet.writeString("{\"text\":\"\"}"); // team display name
-            }
-        } else {
-            packet.writeString("");
-        }
+        boolean jsonClient = client.isJsonText();
 
-        // Since 1.13 character limit for prefix/suffix was removed
-        if (clientVersion >= ProtocolConstants.MINECRAFT_1_13) {
+        // construct the packet on lowest level for future compatibility
+        return PacketTemplate.encode(packet -> {
+            packet.writeVarInt(server.getPacketId(PacketIds.UPDATE_TEAMS));
 
-            if (serverVersion >= ProtocolConstants.MINECRAFT_1_20_3) {
-                writeDefaults(serverVersion, packet);
-                packet.writeComponent(provider.asJsonMessage(player, text));
-                packet.writeComponent("{\"text\":\"\"}");
+            packet.writeString(teamName);
+            packet.writeByte(mode);
 
-            } else if (serverVersion >= ProtocolConstants.MINECRAFT_1_13) {
-                writeDefaults(serverVersion, packet);
-                packet.writeString(provider.asJsonMessage(player, text));
-                packet.writeString("{\"text\":\"\"}");
+            if (mode == TEAM_REMOVED) {
+                return;
+            }
+
+            if (jsonClient) {
+                if (server.isNbtComponents()) {
+                    packet.writeComponent(NbtComponentCache.EMPTY_TEXT);
+                } else {
+                    packet.writeString(NbtComponentCache.EMPTY_TEXT); // team display name
+                }
             } else {
-                String legacyText = provider.asLegacyMessage(player, text);
+                packet.writeString("");
+            }
 
-                packet.writeString(legacyText);
-                packet.writeString(ChatColor.WHITE.toString());
-                writeDefaults(serverVersion, packet);
+            // friendly flags, visibility, collision and color go before the prefix since 1.13
+            if (server.isJsonText()) {
+                writeDefaults(server, packet);
+            }
+        }, mode == TEAM_REMOVED ? null : packet -> {
+            if (jsonClient) {
+                if (server.isNbtComponents()) {
+                    packet.writeComponent(NbtComponentCache.EMPTY_TEXT);
+                } else if (server.isJsonText()) {
+                    packet.writeString(NbtComponentCache.EMPTY_TEXT);
+                } else {
+                    packet.writeString(ChatColor.WHITE.toString());
+                }
+            }
+
+            if (!server.isJsonText()) {
+                writeDefaults(server, packet);
             }
 
             if (mode == TEAM_CREATED) {
                 packet.writeVarInt(1); // number of players
                 packet.writeString(teamEntry); // entries
             }
+        });
+    }
+
+    /**
+     * Creates team packet from the template of {@link #teamTemplate} for the profile of this viewer.
+     * The text must be null only if the team is removed.
+     */
+    public <R> ByteBuf createTeamPacket(@NonNull PacketTemplate template,
+                                        @NonNull ProtocolProfile server,
+                                        @NonNull ViewerSession session,
+                                        @NonNull Player player,
+                                        @Nullable String renderedText,
+                                        @Nullable R component,
+                                        @NonNull TextProvider<R> provider) {
+        ByteBuf buf = session.allocate();
+        template.writePrefix(buf);
+
+        if (renderedText != null) {
+            ByteBufNetOutput packet = ByteBufNetOutput.acquire(buf);
+
+            try {
+                writeTeamText(server, session.getProfile(), packet, player, renderedText, component, provider);
+            } finally {
+                packet.release();
+            }
+        }
 
-            return buf;
+        template.writeSuffix(buf);
+        return buf;
+    }
+
+    private <R> void writeTeamText(ProtocolProfile server, ProtocolProfile client, NetOutput packet,
+                                   Player player, String renderedText, @Nullable R component,
+                                   TextProvider<R> provider) {
+        // Since 1.13 character limit for prefix/suffix was removed
+        if (client.isJsonText()) {
+            if (server.isNbtComponents()) {
+                writeComponent(server, packet, player, renderedText, component, provider);
+            } else {
+                packet.writeString(renderedText);
+            }
+
+            return;
         }
 
         // 1.12 and below stuff :(
         // I'll remove it in future
 
-        String legacyText = provider.asLegacyMessage(player, text);
+        String legacyText = renderedText;
 
         Iterator<String> iterator = SPLITTER.split(legacyText).iterator();
         String prefix = iterator.next();
@@ -185,35 +379,54 @@ public class ScoreboardPackets {
             }
         }
 
-        if (serverVersion < ProtocolConstants.MINECRAFT_1_13) {
+        if (!server.isJsonText()) {
             packet.writeString(prefix);
             packet.writeString(suffix);
-            writeDefaults(serverVersion, packet);
-
         } else {
-            writeDefaults(serverVersion, packet);
             packet.writeString(provider.asJsonMessage(player, provider.fromLegacyMessage(prefix))); // prefix
             packet.writeString(provider.asJsonMessage(player, provider.fromLegacyMessage(suffix))); // suffix
         }
+    }
 
-        if (mode == TEAM_CREATED) {
-            packet.writeVarInt(1); // number of players
-            packet.writeString(teamEntry); // entries
-        }
+    /**
+     * Encodes display objective packet, which is the same every time.
+     *
+     * @param position      - display slot
+     * @param objectiveName - objective name
+     * @param server        - server protocol profile
+     * @return display objective packet template
+     */
+    public PacketTemplate displayObjectiveTemplate(int position, @NonNull String objectiveName,
+                                                   @NonNull ProtocolProfile server) {
+        return PacketTemplate.encode(output -> {
+            output.writeVarInt(server.getPacketId(PacketIds.DISPLAY_OBJECTIVES));
+
+            output.writeByte(position);
+            output.writeString(objectiveName);
+        }, null);
+    }
 
-        return buf;
+    /**
+     * Writes the component as NBT, directly if text provider supports it or by converting its JSON otherwise.
+     */
+    public <R> void writeComponent(@NonNull ProtocolProfile server, @NonNull NetOutput output,
+                                   @NonNull Player player, @NonNull String json,
+                                   @Nullable R component, @NonNull TextProvider<R> provider) {
+        if (component == null || !provider.writeComponent(player, component, server, output)) {
+            output.writeComponent(json);
+        }
     }
 
-    private static void writeDefaults(int serverVersion, @NonNull NetOutput packet) {
+    private static void writeDefaults(@NonNull ProtocolProfile server, @NonNull NetOutput packet) {
         packet.writeByte(10); // friendly tags
-        if (serverVersion < ProtocolConstants.MINECRAFT_1_21_5) {
+        if (!server.isEnumTeamVisibility()) {
             packet.writeString("always"); // name tag visibility
             packet.writeString("always"); // collision rule
         } else {
             packet.writeVarInt(0); // name tag visibility
             packet.writeVarInt(0); // collision rule
         }
-        if (serverVersion < ProtocolConstants.MINECRAFT_1_13) {
+        if (!server.isVarIntEnums()) {
             packet.writeByte(-1); // reset color
         } else {
             packet.writeVarInt(21);
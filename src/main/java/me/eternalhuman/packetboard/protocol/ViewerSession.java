@@ -0,0 +1,195 @@
+package me.eternalhuman.packetboard.protocol;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.handler.flush.FlushConsolidationHandler;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+import me.eternalhuman.packetboard.util.buffer.ByteBufNetOutput;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Connection state of a single viewer which is resolved once on join and reused by every packet
+ * sent to this player until the player quits.
+ */
+@Getter
+@ToString(of = {"uniqueId", "protocolVersion"})
+public final class ViewerSession {
+
+    private final UUID uniqueId;
+    private final int protocolVersion;
+    /**
+     * Client protocol profile, packets themselves are always encoded with {@link ProtocolProfile#server()}
+     */
+    private final ProtocolProfile profile;
+    private final Channel channel;
+    private final ByteBufAllocator allocator;
+
+    // flushes of batched packets, at most one is pending on the event loop
+    @Getter(AccessLevel.NONE)
+    private final boolean flushConsolidated;
+    @Getter(AccessLevel.NONE)
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    @Getter(AccessLevel.NONE)
+    private final Runnable flushTask;
+
+    ViewerSession(@NonNull UUID uniqueId, int protocolVersion, @NonNull Channel channel) {
+        this.uniqueId = uniqueId;
+        this.protocolVersion = protocolVersion;
+        this.profile = ProtocolProfile.of(protocolVersion);
+        this.channel = channel;
+        this.allocator = channel.alloc();
+        this.flushConsolidated = channel.pipeline().get(FlushConsolidationHandler.class) != null;
+        this.flushTask = () -> {
+            flushScheduled.set(false);
+            channel.flush();
+        };
+    }
+
+    public boolean isActive() {
+        return channel.isOpen();
+    }
+
+    public ByteBuf allocate() {
+        return allocator.buffer();
+    }
+
+    public ByteBuf allocate(int initialCapacity) {
+        return allocator.buffer(initialCapacity);
+    }
+
+    /**
+     * Sends the packet. Inside of a {@link PacketBatch} the packet is only written with a void promise
+     * and the channel is flushed when the batch is closed.
+     *
+     * @param packet - packet to send
+     * @return write future, void one inside of a batch
+     */
+    public ChannelFuture send(@NonNull ByteBuf packet) {
+        PacketBatch batch = PacketBatch.current();
+
+        if (batch == null) {
+            return channel.writeAndFlush(packet);
+        }
+
+        if (batch.isEventLoop() || batch.isBundle()) {
+            batch.queue(this, packet);
+            return channel.voidPromise();
+        }
+
+        batch.add(this);
+        return channel.write(packet, channel.voidPromise());
+    }
+
+    /**
+     * Sends the packet of the encoder. In event loop mode of {@link PacketBatch} the packet is encoded later
+     * on the event loop of this channel, otherwise right away, so the encoder must not depend on mutable state.
+     *
+     * @param encoder - packet encoder
+     */
+    public void send(@NonNull Supplier<ByteBuf> encoder) {
+        PacketBatch batch = PacketBatch.current();
+
+        if (batch != null && batch.isEventLoop()) {
+            batch.queue(this, encoder);
+        } else {
+            send(encoder.get());
+        }
+    }
+
+    /**
+     * Encodes and writes the packets queued by a batch in a single task on the event loop of the channel,
+     * so a bundle is never interleaved with packets written by other threads. Buffers of a closed channel
+     * are released right away.
+     */
+    void writeOnEventLoop(List<Object> packets, boolean bundle) {
+        if (!channel.isOpen()) {
+            release(packets, 0);
+            return;
+        }
+
+        try {
+            channel.eventLoop().execute(() -> {
+                try {
+                    write(packets, bundle);
+                } finally {
+                    channel.flush();
+                }
+            });
+        } catch (RejectedExecutionException exception) {
+            // the event loop is shut down, the channel is gone
+            release(packets, 0);
+        }
+    }
+
+    private void write(List<Object> packets, boolean bundle) {
+        if (!bundle) {
+            writeAll(packets);
+            return;
+        }
+
+        // the event loop writes the whole bundle at once, so it's open on the channel only around these packets
+        writeBundleDelimiter();
+
+        try {
+            writeAll(packets);
+        } finally {
+            writeBundleDelimiter();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void writeAll(List<Object> packets) {
+        for (int index = 0; index < packets.size(); index++) {
+            Object packet = packets.get(index);
+
+            try {
+                channel.write(packet instanceof ByteBuf ? packet : ((Supplier<ByteBuf>) packet).get(),
+                        channel.voidPromise());
+            } catch (Throwable throwable) {
+                // don't leak buffers which were encoded before
+                release(packets, index + 1);
+                throw throwable;
+            }
+        }
+    }
+
+    private static void release(List<Object> packets, int from) {
+        // encoders of the event loop mode aren't reference counted, releasing them does nothing
+        for (Object packet : packets.subList(from, packets.size())) {
+            ReferenceCountUtil.release(packet);
+        }
+    }
+
+    private void writeBundleDelimiter() {
+        ByteBuf packet = allocator.buffer(1);
+        ByteBufNetOutput output = ByteBufNetOutput.acquire(packet);
+
+        try {
+            output.writeVarInt(ProtocolProfile.server().getPacketId(PacketIds.BUNDLE_DELIMITER));
+        } finally {
+            output.release();
+        }
+
+        channel.write(packet, channel.voidPromise());
+    }
+
+    void flush() {
+        if (flushConsolidated) {
+            // flushes are already coalesced by the pipeline
+            channel.flush();
+        } else if (flushScheduled.compareAndSet(false, true)) {
+            channel.eventLoop().execute(flushTask);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package me.eternalhuman.packetboard.text;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Clock which advances every registered animation exactly once per {@link #tick()},
+ * no matter how many lines, boards or viewers read it.
+ * <p>
+ * Animations are keyed by the identity of their iterator and counted: registering the same iterator again,
+ * e.g. from another board, returns the same animation, and it's removed once every registration is released.
+ * <p>
+ * Animations don't send anything themselves: readers take {@link Animation#getFrame()} whenever they need it,
+ * and listeners are notified only when the frame text actually changes, so a frame held for many ticks
+ * is sent only once.
+ */
+public final class AnimationClock {
+
+    // guarded by this
+    private final Map<Iterator<String>, Animation> animations = new IdentityHashMap<>();
+
+    /**
+     * Registers the animation in this clock, or returns the already registered one.
+     * Every registration must be released by {@link #unregister}.
+     *
+     * @param iterator - animation to register
+     * @return registered animation
+     */
+    public synchronized Animation register(@NonNull Iterator<String> iterator) {
+        Animation animation = animations.computeIfAbsent(iterator, Animation::new);
+        animation.references++;
+        return animation;
+    }
+
+    /**
+     * Releases one registration of the animation.
+     *
+     * @param iterator - registered animation
+     * @return whether it was the last registration and the animation is removed
+     */
+    public synchronized boolean unregister(@NonNull Iterator<String> iterator) {
+        Animation animation = animations.get(iterator);
+
+        if (animation == null || --animation.references > 0) {
+            return false;
+        }
+
+        animations.remove(iterator);
+        return true;
+    }
+
+    public synchronized boolean isEmpty() {
+        return animations.isEmpty();
+    }
+
+    /**
+     * Advances all registered animations by one tick.
+     */
+    public synchronized void tick() {
+        for (Animation animation : animations.values()) {
+            animation.advance();
+        }
+    }
+
+    public static final class Animation {
+
+        @Getter
+        private final Iterator<String> iterator;
+        private final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
+        // guarded by the clock
+        private int references;
+
+        /**
+         * Current frame text.
+         */
+        @Getter
+        private volatile String frame;
+
+        private Animation(@NonNull Iterator<String> iterator) {
+            this.iterator = iterator;
+            this.frame = iterator.next();
+        }
+
+        /**
+         * Adds listener which is called from the clock thread each time the frame text changes.
+         * Listeners are called while the clock is locked, so they should only record the change.
+         *
+         * @param listener - frame listener
+         */
+        public void addListener(@NonNull Consumer<String> listener) {
+            listeners.add(listener);
+        }
+
+        public void removeListener(@NonNull Consumer<String> listener) {
+            listeners.remove(listener);
+        }
+
+        private void advance() {
+            String next = iterator.next();
+
+            if (next.equals(frame)) {
+                return;
+            }
+
+            this.frame = next;
+
+            for (Consumer<String> listener : listeners) {
+                listener.accept(next);
+            }
+        }
+    }
+}
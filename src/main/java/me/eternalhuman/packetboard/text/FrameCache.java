@@ -0,0 +1,57 @@
+package me.eternalhuman.packetboard.text;
+
+import lombok.NonNull;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Values compiled from the frames of animations, such as parsed components or encoded packets, computed once
+ * per distinct frame text. Animations repeat their frames heavily, so playing one becomes a lookup.
+ * <p>
+ * At most {@link #MAX_FRAMES} frames are kept, frames beyond the limit are compiled on every use.
+ * Thread-safe, a frame can be compiled more than once if threads race for it.
+ *
+ * @param <T> - compiled value type
+ */
+public final class FrameCache<T> {
+
+    public static final int MAX_FRAMES = 512;
+
+    private final Map<String, T> frames = new ConcurrentHashMap<>();
+    private final Function<String, T> compiler;
+
+    public FrameCache(@NonNull Function<String, T> compiler) {
+        this.compiler = compiler;
+    }
+
+    /**
+     * Returns the compiled frame.
+     *
+     * @param frame - frame text
+     * @return compiled frame
+     */
+    public T get(@NonNull String frame) {
+        T value = frames.get(frame);
+
+        if (value == null) {
+            value = compiler.apply(frame);
+
+            if (frames.size() < MAX_FRAMES) {
+                T previous = frames.putIfAbsent(frame, value);
+                value = previous != null ? previous : value;
+            }
+        }
+
+        return value;
+    }
+
+    public int size() {
+        return frames.size();
+    }
+
+    public void clear() {
+        frames.clear();
+    }
+}
@@ -1,6 +1,8 @@
 package me.eternalhuman.packetboard.text;
 
 import lombok.NonNull;
+import me.eternalhuman.packetboard.protocol.ProtocolProfile;
+import me.eternalhuman.packetboard.util.buffer.NetOutput;
 import org.bukkit.entity.Player;
 
 public interface TextProvider<T> {
@@ -12,4 +14,31 @@ public interface TextProvider<T> {
     T emptyMessage();
 
     T fromLegacyMessage(@NonNull String message);
+
+    /**
+     * Writes the component as NBT straight into the packet, skipping JSON serialization and parsing.
+     * Used on servers with NBT components (1.20.3+), if the provider can't write the component
+     * its JSON message is converted instead.
+     *
+     * @param player    - player to render component for
+     * @param component - component to write
+     * @param profile   - protocol profile the packet is encoded for
+     * @param output    - packet output
+     * @return true if the component was written, false if nothing was written
+     */
+    default boolean writeComponent(@NonNull Player player, @NonNull T component,
+                                   @NonNull ProtocolProfile profile, @NonNull NetOutput output) {
+        return false;
+    }
+
+    /**
+     * Returns whether rendered messages don't depend on the player they are rendered for.
+     * Packets of player independent texts are encoded once and shared between viewers.
+     * Built-in providers return true only for their own class, subclasses opt in by overriding this method.
+     *
+     * @return true if player argument of this provider methods is ignored
+     */
+    default boolean isPlayerIndependent() {
+        return false;
+    }
 }
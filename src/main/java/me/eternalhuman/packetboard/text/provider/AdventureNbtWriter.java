@@ -0,0 +1,129 @@
+package me.eternalhuman.packetboard.text.provider;
+
+import lombok.NonNull;
+import lombok.experimental.UtilityClass;
+import me.eternalhuman.packetboard.util.buffer.NbtWriter;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.KeybindComponent;
+import net.kyori.adventure.text.TextComponent;
+import net.kyori.adventure.text.TranslatableComponent;
+import net.kyori.adventure.text.TranslationArgument;
+import net.kyori.adventure.text.format.NamedTextColor;
+import net.kyori.adventure.text.format.Style;
+import net.kyori.adventure.text.format.TextColor;
+import net.kyori.adventure.text.format.TextDecoration;
+
+import java.util.List;
+
+/**
+ * Writes Adventure components straight into NBT the same way as
+ * {@code NbtComponentSerializer.jsonComponentToTag(gson(component))} would, but without JSON and tag trees.
+ * <p>
+ * Only text, translatable and keybind components with plain styles are supported, click and hover events
+ * are left to the JSON path. Use {@link #isSupported(Component)} before writing anything.
+ */
+@UtilityClass
+class AdventureNbtWriter {
+
+    private final TextDecoration[] DECORATIONS = TextDecoration.values();
+
+    boolean isSupported(@NonNull Component component) {
+        if (!(component instanceof TextComponent)
+                && !(component instanceof TranslatableComponent)
+                && !(component instanceof KeybindComponent)) {
+            return false;
+        }
+
+        Style style = component.style();
+        if (style.clickEvent() != null || style.hoverEvent() != null) {
+            return false;
+        }
+
+        if (component instanceof TranslatableComponent) {
+            for (TranslationArgument argument : ((TranslatableComponent) component).arguments()) {
+                if (!(argument.value() instanceof Component) || !isSupported((Component) argument.value())) {
+                    return false;
+                }
+            }
+        }
+
+        for (Component child : component.children()) {
+            if (!isSupported(child)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    void write(@NonNull NbtWriter writer, @NonNull Component component) {
+        writer.beginRoot(NbtWriter.TAG_COMPOUND);
+        writeEntries(writer, component);
+    }
+
+    private void writeEntries(NbtWriter writer, Component component) {
+        if (component instanceof TextComponent) {
+            writer.writeString("text", ((TextComponent) component).content());
+        } else if (component instanceof TranslatableComponent) {
+            TranslatableComponent translatable = (TranslatableComponent) component;
+
+            writer.writeString("translate", translatable.key());
+
+            if (translatable.fallback() != null) {
+                writer.writeString("fallback", translatable.fallback());
+            }
+
+            List<TranslationArgument> arguments = translatable.arguments();
+            if (!arguments.isEmpty()) {
+                writer.beginList("with", NbtWriter.TAG_COMPOUND, arguments.size());
+
+                for (TranslationArgument argument : arguments) {
+                    writeEntries(writer, (Component) argument.value());
+                }
+            }
+        } else {
+            writer.writeString("keybind", ((KeybindComponent) component).keybind());
+        }
+
+        writeStyle(writer, component.style());
+
+        List<Component> children = component.children();
+        if (!children.isEmpty()) {
+            writer.beginList("extra", NbtWriter.TAG_COMPOUND, children.size());
+
+            for (Component child : children) {
+                writeEntries(writer, child);
+            }
+        }
+
+        writer.writeString("type", component instanceof TextComponent ? "text"
+                : component instanceof TranslatableComponent ? "translatable" : "keybind");
+        writer.endCompound();
+    }
+
+    private void writeStyle(NbtWriter writer, Style style) {
+        TextColor color = style.color();
+        if (color != null) {
+            writer.writeString("color", color instanceof NamedTextColor
+                    ? NamedTextColor.NAMES.key((NamedTextColor) color)
+                    : color.asHexString());
+        }
+
+        for (TextDecoration decoration : DECORATIONS) {
+            TextDecoration.State state = style.decoration(decoration);
+
+            if (state != TextDecoration.State.NOT_SET) {
+                // booleans are bytes in NBT
+                writer.writeBoolean(TextDecoration.NAMES.key(decoration), state == TextDecoration.State.TRUE);
+            }
+        }
+
+        if (style.insertion() != null) {
+            writer.writeString("insertion", style.insertion());
+        }
+
+        if (style.font() != null) {
+            writer.writeString("font", style.font().asString());
+        }
+    }
+}
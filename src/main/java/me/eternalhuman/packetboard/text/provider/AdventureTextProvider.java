@@ -1,7 +1,10 @@
 package me.eternalhuman.packetboard.text.provider;
 
 import lombok.NonNull;
+import me.eternalhuman.packetboard.protocol.ProtocolProfile;
 import me.eternalhuman.packetboard.text.TextProvider;
+import me.eternalhuman.packetboard.util.buffer.NbtWriter;
+import me.eternalhuman.packetboard.util.buffer.NetOutput;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.TextComponent;
 import net.kyori.adventure.text.serializer.ComponentSerializer;
@@ -22,6 +25,17 @@ public class AdventureTextProvider implements TextProvider<Component> {
         return GSON_SERIALIZER.serialize(component);
     }
 
+    @Override
+    public boolean writeComponent(@NonNull Player player, @NonNull Component component,
+                                  @NonNull ProtocolProfile profile, @NonNull NetOutput output) {
+        if (!profile.isNbtComponents() || !AdventureNbtWriter.isSupported(component)) {
+            return false;
+        }
+
+        AdventureNbtWriter.write(new NbtWriter(output), component);
+        return true;
+    }
+
     @Override
     public Component emptyMessage() {
         return Component.empty();
@@ -36,4 +50,13 @@ public class AdventureTextProvider implements TextProvider<Component> {
     public String asLegacyMessage(@NonNull Player player, @NonNull Component component) {
         return LEGACY_SERIALIZER.serialize(component);
     }
+
+    /**
+     * Returns true only for this class itself: a subclass may render texts per player,
+     * so it has to opt in by overriding this method.
+     */
+    @Override
+    public boolean isPlayerIndependent() {
+        return getClass() == AdventureTextProvider.class;
+    }
 }
@@ -33,4 +33,13 @@ public class BungeeCordChatTextProvider implements TextProvider<BaseComponent[]>
     public String asLegacyMessage(@NonNull Player player, BaseComponent @NonNull [] component) {
         return TextComponent.toLegacyText(component);
     }
+
+    /**
+     * Returns true only for this class itself: a subclass may render texts per player,
+     * so it has to opt in by overriding this method.
+     */
+    @Override
+    public boolean isPlayerIndependent() {
+        return getClass() == BungeeCordChatTextProvider.class;
+    }
 }
@@ -2,7 +2,11 @@ package me.eternalhuman.packetboard.text.provider;
 
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
+import me.eternalhuman.packetboard.protocol.ProtocolProfile;
 import me.eternalhuman.packetboard.text.TextProvider;
+import me.eternalhuman.packetboard.util.buffer.NbtWriter;
+import me.eternalhuman.packetboard.util.buffer.NetOutput;
+import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.minimessage.MiniMessage;
 import org.bukkit.entity.Player;
 
@@ -13,7 +17,23 @@ public class MiniMessageTextProvider implements TextProvider<String> {
 
     @Override
     public String asJsonMessage(@NonNull Player player, @NonNull String message) {
-        return AdventureTextProvider.GSON_SERIALIZER.serialize(miniMessage.deserialize(message));
+        return AdventureTextProvider.GSON_SERIALIZER.serialize(deserialize(player, message));
+    }
+
+    @Override
+    public boolean writeComponent(@NonNull Player player, @NonNull String message,
+                                  @NonNull ProtocolProfile profile, @NonNull NetOutput output) {
+        if (!profile.isNbtComponents()) {
+            return false;
+        }
+
+        Component component = deserialize(player, message);
+        if (!AdventureNbtWriter.isSupported(component)) {
+            return false;
+        }
+
+        AdventureNbtWriter.write(new NbtWriter(output), component);
+        return true;
     }
 
     @Override
@@ -23,11 +43,24 @@ public class MiniMessageTextProvider implements TextProvider<String> {
 
     @Override
     public String asLegacyMessage(@NonNull Player player, @NonNull String component) {
-        return AdventureTextProvider.LEGACY_SERIALIZER.serialize(miniMessage.deserialize(component));
+        return AdventureTextProvider.LEGACY_SERIALIZER.serialize(deserialize(player, component));
+    }
+
+    protected Component deserialize(@NonNull Player player, @NonNull String message) {
+        return miniMessage.deserialize(message);
     }
 
     @Override
     public String fromLegacyMessage(@NonNull String message) {
         return message; // will be transformed on packet level
     }
+
+    /**
+     * Returns true only for this class itself: a subclass may render texts per player,
+     * so it has to opt in by overriding this method.
+     */
+    @Override
+    public boolean isPlayerIndependent() {
+        return getClass() == MiniMessageTextProvider.class;
+    }
 }
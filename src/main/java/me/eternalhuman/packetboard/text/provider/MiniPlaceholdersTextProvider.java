@@ -2,6 +2,7 @@ package me.eternalhuman.packetboard.text.provider;
 
 import io.github.miniplaceholders.api.MiniPlaceholders;
 import lombok.NonNull;
+import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.minimessage.MiniMessage;
 import org.bukkit.entity.Player;
 
@@ -12,15 +13,12 @@ public class MiniPlaceholdersTextProvider extends MiniMessageTextProvider {
     }
 
     @Override
-    public String asJsonMessage(@NonNull Player player, @NonNull String message) {
-        return AdventureTextProvider.GSON_SERIALIZER.serialize(
-                miniMessage.deserialize(message, MiniPlaceholders.getAudienceGlobalPlaceholders(player)));
+    protected Component deserialize(@NonNull Player player, @NonNull String message) {
+        return miniMessage.deserialize(message, MiniPlaceholders.getAudienceGlobalPlaceholders(player));
     }
 
-
     @Override
-    public String asLegacyMessage(@NonNull Player player, @NonNull String component) {
-        return AdventureTextProvider.LEGACY_SERIALIZER.serialize(
-                miniMessage.deserialize(component, MiniPlaceholders.getAudienceGlobalPlaceholders(player)));
+    public boolean isPlayerIndependent() {
+        return false;
     }
 }
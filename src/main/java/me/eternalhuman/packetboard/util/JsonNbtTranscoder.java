@@ -0,0 +1,190 @@
+package me.eternalhuman.packetboard.util;
+
+import com.google.gson.internal.LazilyParsedNumber;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import io.netty.buffer.ByteBuf;
+import lombok.NonNull;
+import me.eternalhuman.packetboard.util.buffer.ByteBufNetOutput;
+import me.eternalhuman.packetboard.util.buffer.NbtWriter;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+/**
+ * Streaming counterpart of {@link NbtComponentSerializer#jsonComponentToTag}: reads JSON component token by token
+ * and writes network NBT straight into the buffer, without building JSON and tag trees.
+ * <p>
+ * The output is the same as of the tree conversion: component "type" is inferred, booleans are written as bytes
+ * and numbers as ints. Things which need the whole tree are left to {@link NbtComponentSerializer}: lists of
+ * different element types (they are wrapped into text components), hover event contents (show_entity UUIDs are
+ * converted to int arrays) and null values. In this case nothing is written and {@code false} is returned.
+ */
+public final class JsonNbtTranscoder {
+
+    // Order is important, see NbtComponentSerializer
+    private static final String[] COMPONENT_TYPES = {"text", "translatable", "score", "selector", "keybind", "nbt"};
+    private static final String[] COMPONENT_KEYS = {"text", "translate", "score", "selector", "keybind", "nbt"};
+
+    private JsonNbtTranscoder() {
+
+    }
+
+    /**
+     * Writes JSON component as nameless NBT tag.
+     *
+     * @param json - JSON component
+     * @param buf  - buffer to write to
+     * @return true if the component was written, false if buffer was left untouched
+     * and the component must be converted with {@link NbtComponentSerializer}
+     */
+    public static boolean transcode(@NonNull String json, @NonNull ByteBuf buf) {
+        return transcode(json, new ByteBufNetOutput(buf));
+    }
+
+    /**
+     * Writes JSON component as nameless NBT tag into the buffer of the output.
+     *
+     * @see #transcode(String, ByteBuf)
+     */
+    public static boolean transcode(@NonNull String json, @NonNull ByteBufNetOutput output) {
+        ByteBuf buf = output.getBuffer();
+        int start = buf.writerIndex();
+
+        try (JsonReader reader = new JsonReader(new StringReader(json))) {
+            reader.setLenient(true); // as JsonParser does
+
+            NbtWriter writer = new NbtWriter(output);
+            int type = tagType(reader.peek());
+
+            if (type != NbtWriter.TAG_END) {
+                writer.beginRoot(type);
+
+                if (writePayload(reader, writer, buf, type)) {
+                    return true;
+                }
+            }
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            // let the tree conversion report malformed JSON
+        }
+
+        buf.writerIndex(start);
+        return false;
+    }
+
+    private static int tagType(JsonToken token) {
+        switch (token) {
+            case BEGIN_OBJECT:
+                return NbtWriter.TAG_COMPOUND;
+            case BEGIN_ARRAY:
+                return NbtWriter.TAG_LIST;
+            case STRING:
+                return NbtWriter.TAG_STRING;
+            case BOOLEAN:
+                return NbtWriter.TAG_BYTE;
+            case NUMBER:
+                return NbtWriter.TAG_INT;
+            default:
+                return NbtWriter.TAG_END; // null and end of document are not supported
+        }
+    }
+
+    private static boolean writePayload(JsonReader reader, NbtWriter writer, ByteBuf buf, int type) throws IOException {
+        switch (type) {
+            case NbtWriter.TAG_COMPOUND:
+                return writeCompound(reader, writer, buf);
+            case NbtWriter.TAG_LIST:
+                return writeList(reader, writer, buf);
+            case NbtWriter.TAG_STRING:
+                writer.getOutput().writeUTF(reader.nextString());
+                return true;
+            case NbtWriter.TAG_BYTE:
+                writer.getOutput().writeByte(reader.nextBoolean() ? 1 : 0);
+                return true;
+            default:
+                writer.getOutput().writeInt(new LazilyParsedNumber(reader.nextString()).intValue());
+                return true;
+        }
+    }
+
+    private static boolean writeCompound(JsonReader reader, NbtWriter writer, ByteBuf buf) throws IOException {
+        boolean hasType = false;
+        int componentType = COMPONENT_KEYS.length;
+
+        reader.beginObject();
+
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            JsonToken token = reader.peek();
+            int type = tagType(token);
+
+            if (type == NbtWriter.TAG_END || (type == NbtWriter.TAG_COMPOUND && name.equals("contents"))) {
+                return false;
+            }
+
+            if (name.equals("type")) {
+                hasType = true;
+            } else {
+                for (int i = 0; i < componentType; i++) {
+                    if (COMPONENT_KEYS[i].equals(name)) {
+                        componentType = i;
+                        break;
+                    }
+                }
+            }
+
+            writer.writeName(type, name);
+
+            if (!writePayload(reader, writer, buf, type)) {
+                return false;
+            }
+        }
+
+        reader.endObject();
+
+        // Add the type to speed up deserialization and make DFU errors slightly more useful
+        if (!hasType && componentType < COMPONENT_TYPES.length) {
+            writer.writeString("type", COMPONENT_TYPES[componentType]);
+        }
+
+        writer.endCompound();
+        return true;
+    }
+
+    private static boolean writeList(JsonReader reader, NbtWriter writer, ByteBuf buf) throws IOException {
+        reader.beginArray();
+
+        if (!reader.hasNext()) {
+            reader.endArray();
+
+            writer.getOutput().writeByte(NbtWriter.TAG_END);
+            writer.getOutput().writeInt(0);
+            return true;
+        }
+
+        int elementType = tagType(reader.peek());
+        if (elementType == NbtWriter.TAG_END) {
+            return false;
+        }
+
+        writer.getOutput().writeByte(elementType);
+
+        int sizeIndex = buf.writerIndex();
+        writer.getOutput().writeInt(0); // size is patched below
+        int size = 0;
+
+        while (reader.hasNext()) {
+            // lists of different types are wrapped into compounds by the tree conversion
+            if (tagType(reader.peek()) != elementType || !writePayload(reader, writer, buf, elementType)) {
+                return false;
+            }
+
+            size++;
+        }
+
+        reader.endArray();
+
+        buf.setInt(sizeIndex, size);
+        return true;
+    }
+}
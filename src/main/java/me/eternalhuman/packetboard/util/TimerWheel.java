@@ -0,0 +1,177 @@
+package me.eternalhuman.packetboard.util;
+
+import com.google.common.base.Preconditions;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timer wheel counting in ticks: each of {@link #LEVELS} levels has 64 slots, and a slot
+ * of an upper level is cascaded into the lower ones once the wheel reaches it. Scheduling and cancellation
+ * are O(1), advancing costs O(1) plus the number of due and cascaded entries.
+ * <p>
+ * Entries are intrusive doubly-linked list nodes, so the wheel doesn't allocate anything.
+ * Not thread-safe, callers must synchronize.
+ *
+ * @param <E> - entry type
+ */
+public final class TimerWheel<E extends TimerWheel.Entry> {
+
+    public static final int LEVELS = 4;
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    // deadlines after this many ticks are cascaded down multiple times
+    private static final long MAX_DELAY = (1L << (SLOT_BITS * LEVELS)) - 1;
+
+    private final Entry[][] slots = new Entry[LEVELS][SLOTS];
+
+    /**
+     * Current tick, every entry of the wheel is due after it
+     */
+    @Getter
+    private long tick;
+    @Getter
+    private int size;
+
+    /**
+     * Schedules the entry.
+     *
+     * @param entry - entry which isn't scheduled
+     * @param delay - delay in ticks, at least 1
+     */
+    public void schedule(@NonNull E entry, long delay) {
+        Preconditions.checkArgument(delay > 0, "Delay must be positive");
+        Preconditions.checkState(entry.level == -1, "Entry is already scheduled");
+
+        entry.deadline = tick + delay;
+        place(entry);
+        size++;
+    }
+
+    /**
+     * Removes the entry from the wheel.
+     *
+     * @param entry - entry
+     * @return false if the entry wasn't scheduled
+     */
+    public boolean cancel(@NonNull E entry) {
+        if (entry.level == -1) {
+            return false;
+        }
+
+        unlink(entry);
+        size--;
+        return true;
+    }
+
+    /**
+     * Advances the wheel by one tick.
+     *
+     * @param consumer - consumer of the entries which are due in the new tick, they aren't scheduled anymore
+     */
+    @SuppressWarnings("unchecked")
+    public void advance(@NonNull Consumer<? super E> consumer) {
+        long tick = ++this.tick;
+
+        for (int level = 1; level < LEVELS; level++) {
+            if ((tick & ((1L << (SLOT_BITS * level)) - 1)) != 0) {
+                break;
+            }
+
+            Entry entry = detach(level, (int) (tick >>> (SLOT_BITS * level)) & SLOT_MASK);
+
+            while (entry != null) {
+                Entry next = entry.next;
+                entry.next = null;
+                place(entry);
+                entry = next;
+            }
+        }
+
+        Entry entry = detach(0, (int) tick & SLOT_MASK);
+
+        while (entry != null) {
+            Entry next = entry.next;
+            entry.next = null;
+            size--;
+            consumer.accept((E) entry);
+            entry = next;
+        }
+    }
+
+    private void place(Entry entry) {
+        long delay = Math.min(entry.deadline - tick, MAX_DELAY);
+        // entries of the same deadline share the slot index on every level
+        long deadline = tick + delay;
+        int level = 0;
+
+        while (level < LEVELS - 1 && delay >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+
+        int slot = (int) (deadline >>> (SLOT_BITS * level)) & SLOT_MASK;
+        Entry head = slots[level][slot];
+
+        entry.level = level;
+        entry.slot = slot;
+        entry.previous = null;
+        entry.next = head;
+
+        if (head != null) {
+            head.previous = entry;
+        }
+
+        slots[level][slot] = entry;
+    }
+
+    private void unlink(Entry entry) {
+        if (entry.previous != null) {
+            entry.previous.next = entry.next;
+        } else {
+            slots[entry.level][entry.slot] = entry.next;
+        }
+
+        if (entry.next != null) {
+            entry.next.previous = entry.previous;
+        }
+
+        entry.previous = null;
+        entry.next = null;
+        entry.level = -1;
+    }
+
+    private Entry detach(int level, int slot) {
+        Entry head = slots[level][slot];
+        slots[level][slot] = null;
+
+        for (Entry entry = head; entry != null; entry = entry.next) {
+            entry.previous = null;
+            entry.level = -1;
+        }
+
+        return head;
+    }
+
+    /**
+     * Node of the wheel, an entry can be scheduled in one wheel at a time.
+     */
+    public abstract static class Entry {
+
+        long deadline;
+        int level = -1;
+        int slot;
+        Entry previous;
+        Entry next;
+
+        public long getDeadline() {
+            return deadline;
+        }
+
+        public boolean isScheduled() {
+            return level != -1;
+        }
+    }
+}
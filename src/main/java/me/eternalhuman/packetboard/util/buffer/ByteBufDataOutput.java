@@ -0,0 +1,89 @@
+package me.eternalhuman.packetboard.util.buffer;
+
+import io.netty.buffer.ByteBuf;
+import lombok.NonNull;
+
+import java.io.DataOutput;
+
+/**
+ * {@link DataOutput} which writes straight into a {@link ByteBuf}. Unlike {@link io.netty.buffer.ByteBufOutputStream}
+ * it can be pointed to another buffer, so one instance is reused for all NBT written by a {@link ByteBufNetOutput}.
+ */
+final class ByteBufDataOutput implements DataOutput {
+
+    ByteBuf buf;
+
+    @Override
+    public void write(int b) {
+        buf.writeByte(b);
+    }
+
+    @Override
+    public void write(byte @NonNull [] b) {
+        buf.writeBytes(b);
+    }
+
+    @Override
+    public void write(byte @NonNull [] b, int off, int len) {
+        buf.writeBytes(b, off, len);
+    }
+
+    @Override
+    public void writeBoolean(boolean v) {
+        buf.writeBoolean(v);
+    }
+
+    @Override
+    public void writeByte(int v) {
+        buf.writeByte(v);
+    }
+
+    @Override
+    public void writeShort(int v) {
+        buf.writeShort(v);
+    }
+
+    @Override
+    public void writeChar(int v) {
+        buf.writeChar(v);
+    }
+
+    @Override
+    public void writeInt(int v) {
+        buf.writeInt(v);
+    }
+
+    @Override
+    public void writeLong(long v) {
+        buf.writeLong(v);
+    }
+
+    @Override
+    public void writeFloat(float v) {
+        buf.writeFloat(v);
+    }
+
+    @Override
+    public void writeDouble(double v) {
+        buf.writeDouble(v);
+    }
+
+    @Override
+    public void writeBytes(@NonNull String s) {
+        for (int i = 0; i < s.length(); i++) {
+            buf.writeByte(s.charAt(i));
+        }
+    }
+
+    @Override
+    public void writeChars(@NonNull String s) {
+        for (int i = 0; i < s.length(); i++) {
+            buf.writeChar(s.charAt(i));
+        }
+    }
+
+    @Override
+    public void writeUTF(@NonNull String s) {
+        ByteBufNetOutput.writeModifiedUtf(buf, s);
+    }
+}
@@ -5,25 +5,64 @@ import com.google.gson.JsonParser;
 import com.viaversion.nbt.io.NBTIO;
 import com.viaversion.nbt.tag.Tag;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import lombok.NonNull;
 import lombok.SneakyThrows;
+import me.eternalhuman.packetboard.util.JsonNbtTranscoder;
 import me.eternalhuman.packetboard.util.NbtComponentSerializer;
 import org.jetbrains.annotations.Nullable;
 
-import java.io.DataOutputStream;
-import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.UUID;
 
 /**
  * A NetOutput implementation using a ByteBuf as a backend.
+ * <p>
+ * Strings, varints and NBT are written straight into the buffer without temporary arrays or streams.
+ * Components are taken from {@link NbtComponentCache}.
+ * Packet writers should use {@link #acquire(ByteBuf)} to reuse the thread-local instance.
  */
 public class ByteBufNetOutput implements NetOutput {
+
+    private static final ThreadLocal<ByteBufNetOutput> LOCAL = ThreadLocal.withInitial(() -> new ByteBufNetOutput(null));
+
     private ByteBuf buf;
+    private ByteBufDataOutput dataOutput;
 
     public ByteBufNetOutput(ByteBuf buf) {
         this.buf = buf;
     }
 
+    /**
+     * Returns thread-local output writing to the buffer, or a new one if the local output is already in use.
+     * The output must be given back with {@link #release()} once the packet is written.
+     *
+     * @param buf - buffer to write to
+     * @return output writing to the buffer
+     */
+    public static ByteBufNetOutput acquire(@NonNull ByteBuf buf) {
+        ByteBufNetOutput output = LOCAL.get();
+
+        if (output.buf != null) {
+            return new ByteBufNetOutput(buf);
+        }
+
+        output.buf = buf;
+        return output;
+    }
+
+    public void release() {
+        this.buf = null;
+
+        if (dataOutput != null) {
+            dataOutput.buf = null;
+        }
+    }
+
+    public ByteBuf getBuffer() {
+        return buf;
+    }
+
     @Override
     public void writeBoolean(boolean b) {
         this.buf.writeBoolean(b);
@@ -31,6 +70,20 @@ public class ByteBufNetOutput implements NetOutput {
 
     @Override
     public void writeComponent(String json) {
+        byte[] nbt = NbtComponentCache.get(json);
+
+        if (nbt != null) {
+            this.buf.writeBytes(nbt);
+        } else {
+            encodeComponent(json);
+        }
+    }
+
+    void encodeComponent(String json) {
+        if (JsonNbtTranscoder.transcode(json, this)) {
+            return;
+        }
+
         JsonElement jsonElement = JsonParser.parseString(json);
         Tag tag = NbtComponentSerializer.jsonComponentToTag(jsonElement);
 
@@ -40,12 +93,12 @@ public class ByteBufNetOutput implements NetOutput {
     @SneakyThrows
     @Override
     public <T extends Tag> void writeAnyTag(@Nullable T tag, boolean named) {
-        NBTIO.writeTag(new DataOutputStream(new OutputStream() {
-            @Override
-            public void write(int b) {
-                buf.writeByte(b);
-            }
-        }), tag, named);
+        if (dataOutput == null) {
+            dataOutput = new ByteBufDataOutput();
+        }
+
+        dataOutput.buf = buf;
+        NBTIO.writeTag(dataOutput, tag, named);
     }
 
     @Override
@@ -70,12 +123,21 @@ public class ByteBufNetOutput implements NetOutput {
 
     @Override
     public void writeVarInt(int i) {
-        while ((i & ~0x7F) != 0) {
-            this.writeByte((i & 0x7F) | 0x80);
-            i >>>= 7;
+        // all bytes of the varint are written at once
+        if ((i & (-1 << 7)) == 0) {
+            this.buf.writeByte(i);
+        } else if ((i & (-1 << 14)) == 0) {
+            this.buf.writeShort((i & 0x7F | 0x80) << 8 | i >>> 7);
+        } else if ((i & (-1 << 21)) == 0) {
+            this.buf.writeMedium((i & 0x7F | 0x80) << 16 | (i >>> 7 & 0x7F | 0x80) << 8 | i >>> 14);
+        } else if ((i & (-1 << 28)) == 0) {
+            this.buf.writeInt((i & 0x7F | 0x80) << 24 | (i >>> 7 & 0x7F | 0x80) << 16
+                    | (i >>> 14 & 0x7F | 0x80) << 8 | i >>> 21);
+        } else {
+            this.buf.writeInt((i & 0x7F | 0x80) << 24 | (i >>> 7 & 0x7F | 0x80) << 16
+                    | (i >>> 14 & 0x7F | 0x80) << 8 | (i >>> 21 & 0x7F | 0x80));
+            this.buf.writeByte(i >>> 28);
         }
-
-        this.writeByte(i);
     }
 
     @Override
@@ -162,12 +224,58 @@ public class ByteBufNetOutput implements NetOutput {
             throw new IllegalArgumentException("String cannot be null!");
         }
 
-        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
-        if (bytes.length > 32767) {
-            throw new RuntimeException("String too big (was " + s.length() + " bytes encoded, max " + 32767 + ")");
+        int length = ByteBufUtil.utf8Bytes(s);
+        if (length > 32767) {
+            throw new RuntimeException("String too big (was " + length + " bytes encoded, max " + 32767 + ")");
         } else {
-            this.writeVarInt(bytes.length);
-            this.writeBytes(bytes);
+            this.writeVarInt(length);
+            ByteBufUtil.reserveAndWriteUtf8(this.buf, s, length);
+        }
+    }
+
+    @Override
+    public void writeUTF(String s) {
+        writeModifiedUtf(this.buf, s);
+    }
+
+    static void writeModifiedUtf(ByteBuf buf, String s) {
+        int length = s.length();
+        int utfLength = length;
+
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+
+            if (c < 0x0001 || c > 0x007F) {
+                utfLength += c > 0x07FF ? 2 : 1;
+            }
+        }
+
+        if (utfLength > 65535) {
+            throw new IllegalArgumentException("String too big (was " + utfLength + " bytes encoded, max 65535)");
+        }
+
+        buf.writeShort(utfLength);
+
+        if (utfLength == length) {
+            buf.writeCharSequence(s, StandardCharsets.US_ASCII);
+            return;
+        }
+
+        buf.ensureWritable(utfLength);
+
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+
+            if (c >= 0x0001 && c <= 0x007F) {
+                buf.writeByte(c);
+            } else if (c > 0x07FF) {
+                buf.writeByte(0xE0 | c >> 12 & 0x0F);
+                buf.writeByte(0x80 | c >> 6 & 0x3F);
+                buf.writeByte(0x80 | c & 0x3F);
+            } else {
+                buf.writeByte(0xC0 | c >> 6 & 0x1F);
+                buf.writeByte(0x80 | c & 0x3F);
+            }
         }
     }
 
@@ -0,0 +1,144 @@
+package me.eternalhuman.packetboard.util.buffer;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import lombok.NonNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide cache of JSON components encoded as network NBT, so static and repeated texts
+ * are converted only once and then written with a single {@code writeBytes}.
+ * <p>
+ * The cache is bounded by the total weight of keys and encoded bytes and evicts least recently used entries.
+ * Pinned components, such as the empty text, are never evicted.
+ * <p>
+ * A component is admitted only on its second sighting: the first miss is just remembered by its hash
+ * and the caller encodes the component straight into its own buffer. Texts which are rendered once,
+ * such as per-player values which change on every update, never evict repeated ones and cost no copy.
+ */
+public final class NbtComponentCache {
+
+    /**
+     * Empty text component, used as team display name and suffix.
+     */
+    public static final String EMPTY_TEXT = "{\"text\":\"\"}";
+
+    private static final long MAXIMUM_WEIGHT = 4L * 1024 * 1024; // ~4 MB
+    private static final int MAXIMUM_JSON_LENGTH = 8 * 1024; // longer components aren't worth keeping
+    private static final int DOORKEEPER_SIZE = 1 << 14; // power of two
+
+    private static final Map<String, byte[]> PINNED = new ConcurrentHashMap<>();
+    private static final Cache<String, byte[]> CACHE = CacheBuilder.newBuilder()
+            .maximumWeight(MAXIMUM_WEIGHT)
+            .weigher((String json, byte[] nbt) -> json.length() * 2 + nbt.length)
+            .build();
+
+    // hashes of components which missed once, racy writes only make a component wait for another sighting
+    private static final int[] DOORKEEPER = new int[DOORKEEPER_SIZE];
+
+    private static final LongAdder HITS = new LongAdder();
+    private static final LongAdder MISSES = new LongAdder();
+
+    static {
+        pin(EMPTY_TEXT);
+    }
+
+    private NbtComponentCache() {
+
+    }
+
+    /**
+     * Pins the component, so it is never evicted from the cache.
+     *
+     * @param json - JSON component
+     */
+    public static void pin(@NonNull String json) {
+        PINNED.computeIfAbsent(json, NbtComponentCache::encode);
+        CACHE.invalidate(json);
+    }
+
+    /**
+     * Returns the component encoded as nameless NBT tag, converting and caching it on a repeated miss.
+     * The returned array is shared and must not be modified.
+     *
+     * @param json - JSON component
+     * @return encoded component, or null if the component is seen for the first time or too long to be cached,
+     * then the caller encodes it itself
+     */
+    public static byte @Nullable [] get(@NonNull String json) {
+        byte[] nbt = PINNED.get(json);
+
+        if (nbt == null) {
+            nbt = CACHE.getIfPresent(json);
+        }
+
+        if (nbt != null) {
+            HITS.increment();
+            return nbt;
+        }
+
+        MISSES.increment();
+
+        if (json.length() > MAXIMUM_JSON_LENGTH || !admit(json)) {
+            return null;
+        }
+
+        // concurrent misses may encode the same component twice, the result is the same
+        nbt = encode(json);
+        CACHE.put(json, nbt);
+        return nbt;
+    }
+
+    public static long getHitCount() {
+        return HITS.sum();
+    }
+
+    public static long getMissCount() {
+        return MISSES.sum();
+    }
+
+    /**
+     * @return number of cached components, including pinned ones
+     */
+    public static long size() {
+        return CACHE.size() + PINNED.size();
+    }
+
+    /**
+     * Removes all components which aren't pinned.
+     */
+    public static void invalidateAll() {
+        CACHE.invalidateAll();
+    }
+
+    private static boolean admit(String json) {
+        // spread the bits, string hashes of similar texts differ only in the low ones
+        int hash = json.hashCode() * 0x9E3779B9;
+        int slot = (hash ^ (hash >>> 16)) & (DOORKEEPER_SIZE - 1);
+
+        if (DOORKEEPER[slot] == hash) {
+            return true;
+        }
+
+        DOORKEEPER[slot] = hash;
+        return false;
+    }
+
+    private static byte[] encode(String json) {
+        ByteBuf buf = Unpooled.buffer(json.length());
+
+        try {
+            new ByteBufNetOutput(buf).encodeComponent(json);
+            return ByteBufUtil.getBytes(buf);
+        } finally {
+            buf.release();
+        }
+    }
+}
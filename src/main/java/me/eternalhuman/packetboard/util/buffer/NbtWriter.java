@@ -0,0 +1,87 @@
+package me.eternalhuman.packetboard.util.buffer;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * Writes nameless network NBT (1.20.2+) token by token, without building tag objects.
+ * <p>
+ * Root tag is started with {@link #beginRoot(int)}, compound entries are written with named methods,
+ * every compound must be closed with {@link #endCompound()}. Compound elements of a list are just their
+ * entries closed with {@link #endCompound()}, string elements are written with {@link #writeListString(String)}.
+ */
+public final class NbtWriter {
+
+    public static final int TAG_END = 0;
+    public static final int TAG_BYTE = 1;
+    public static final int TAG_SHORT = 2;
+    public static final int TAG_INT = 3;
+    public static final int TAG_LONG = 4;
+    public static final int TAG_FLOAT = 5;
+    public static final int TAG_DOUBLE = 6;
+    public static final int TAG_BYTE_ARRAY = 7;
+    public static final int TAG_STRING = 8;
+    public static final int TAG_LIST = 9;
+    public static final int TAG_COMPOUND = 10;
+    public static final int TAG_INT_ARRAY = 11;
+    public static final int TAG_LONG_ARRAY = 12;
+
+    @Getter
+    private final NetOutput output;
+
+    public NbtWriter(@NonNull NetOutput output) {
+        this.output = output;
+    }
+
+    public void beginRoot(int type) {
+        output.writeByte(type);
+    }
+
+    public void beginCompound(@NonNull String name) {
+        writeName(TAG_COMPOUND, name);
+    }
+
+    public void endCompound() {
+        output.writeByte(TAG_END);
+    }
+
+    public void beginList(@NonNull String name, int elementType, int size) {
+        writeName(TAG_LIST, name);
+        output.writeByte(size == 0 ? TAG_END : elementType);
+        output.writeInt(size);
+    }
+
+    public void writeListString(@NonNull String value) {
+        output.writeUTF(value);
+    }
+
+    public void writeString(@NonNull String name, @NonNull String value) {
+        writeName(TAG_STRING, name);
+        output.writeUTF(value);
+    }
+
+    public void writeByte(@NonNull String name, int value) {
+        writeName(TAG_BYTE, name);
+        output.writeByte(value);
+    }
+
+    public void writeBoolean(@NonNull String name, boolean value) {
+        writeByte(name, value ? 1 : 0);
+    }
+
+    public void writeInt(@NonNull String name, int value) {
+        writeName(TAG_INT, name);
+        output.writeInt(value);
+    }
+
+    public void writeIntArray(@NonNull String name, int @NonNull [] value) {
+        writeName(TAG_INT_ARRAY, name);
+        output.writeInt(value.length);
+        output.writeInts(value);
+    }
+
+    public void writeName(int type, @NonNull String name) {
+        output.writeByte(type);
+        output.writeUTF(name);
+    }
+}
@@ -150,6 +150,43 @@ public interface NetOutput {
      */
     public void writeString(String s);
 
+    /**
+     * Writes a string in modified UTF-8 prefixed with unsigned short length, the same way as
+     * {@link java.io.DataOutput#writeUTF(String)} does. This is how NBT strings are encoded.
+     *
+     * @param s String to write.
+     */
+    public default void writeUTF(String s) {
+        int length = s.length();
+        int utfLength = 0;
+
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            utfLength += c >= 0x0001 && c <= 0x007F ? 1 : c > 0x07FF ? 3 : 2;
+        }
+
+        if (utfLength > 65535) {
+            throw new IllegalArgumentException("String too big (was " + utfLength + " bytes encoded, max 65535)");
+        }
+
+        this.writeShort(utfLength);
+
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+
+            if (c >= 0x0001 && c <= 0x007F) {
+                this.writeByte(c);
+            } else if (c > 0x07FF) {
+                this.writeByte(0xE0 | ((c >> 12) & 0x0F));
+                this.writeByte(0x80 | ((c >> 6) & 0x3F));
+                this.writeByte(0x80 | (c & 0x3F));
+            } else {
+                this.writeByte(0xC0 | ((c >> 6) & 0x1F));
+                this.writeByte(0x80 | (c & 0x3F));
+            }
+        }
+    }
+
     /**
      * Writes a UUID.
      *
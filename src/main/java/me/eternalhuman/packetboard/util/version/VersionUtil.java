@@ -17,8 +17,21 @@ public final class VersionUtil {
         Bukkit.getLogger().info("[PacketBoard] Please report any bugs to the developer: https://github.com/EternalHuman/PacketBoard/issues");
     }
 
+    /**
+     * Looks up the client protocol version of the player.
+     * Note: this method queries plugin manager and ViaVersion API on every call,
+     * use {@link me.eternalhuman.packetboard.protocol.ChannelInjector#getSession} to get the cached one.
+     *
+     * @param id - player unique id
+     * @return client protocol version
+     */
     public static int getPlayerVersion(@NonNull UUID id) {
-        boolean isVia = Bukkit.getPluginManager().isPluginEnabled("ViaVersion");
-        return isVia ? JavaPlugin.getPlugin(ViaVersionPlugin.class).getApi().getPlayerProtocolVersion(id).getVersion() : SERVER_VERSION;
+        if (!Bukkit.getPluginManager().isPluginEnabled("ViaVersion")) {
+            // without ViaVersion the server only accepts clients of its own protocol
+            return SERVER_VERSION;
+        }
+
+        int version = JavaPlugin.getPlugin(ViaVersionPlugin.class).getApi().getPlayerProtocolVersion(id).getVersion();
+        return version > 0 ? version : SERVER_VERSION;
     }
 }
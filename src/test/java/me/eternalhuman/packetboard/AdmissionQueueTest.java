@@ -0,0 +1,108 @@
+package me.eternalhuman.packetboard;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class AdmissionQueueTest {
+
+    private final AtomicInteger started = new AtomicInteger();
+    private final AtomicInteger cancelled = new AtomicInteger();
+    private final AdmissionQueue<Integer> queue = new AdmissionQueue<>(() -> {
+        started.incrementAndGet();
+        return cancelled::incrementAndGet;
+    });
+
+    @Test
+    public void testRate() {
+        for (int i = 0; i < 7; i++) {
+            queue.add(i);
+        }
+
+        // the task is started once for the whole burst
+        assertEquals(1, started.get());
+
+        assertEquals(Arrays.asList(0, 1, 2), queue.poll(3));
+        assertEquals(Arrays.asList(3, 4, 5), queue.poll(3));
+        assertTrue(queue.isScheduled());
+
+        // the task is cancelled with the last viewers
+        assertEquals(Collections.singletonList(6), queue.poll(3));
+        assertFalse(queue.isScheduled());
+        assertEquals(1, cancelled.get());
+    }
+
+    @Test
+    public void testUnlimitedRate() {
+        for (int i = 0; i < 100; i++) {
+            queue.add(i);
+        }
+
+        assertEquals(100, queue.poll(0).size());
+        assertEquals(0, queue.size());
+        assertFalse(queue.isScheduled());
+    }
+
+    @Test
+    public void testRestartAfterDrain() {
+        queue.add(1);
+        assertEquals(Collections.singletonList(1), queue.poll(10));
+        assertEquals(1, cancelled.get());
+
+        // a viewer queued later starts a new task
+        queue.add(2);
+        assertEquals(2, started.get());
+        assertTrue(queue.isScheduled());
+    }
+
+    @Test
+    public void testDrain() {
+        queue.add(1);
+        queue.add(2);
+
+        assertEquals(Arrays.asList(1, 2), queue.drain());
+        assertFalse(queue.isScheduled());
+        assertEquals(1, cancelled.get());
+        assertTrue(queue.poll(0).isEmpty());
+    }
+
+    @Test
+    public void testConcurrentAdds() throws InterruptedException {
+        int threads = 4;
+        int perThread = 1000;
+        CountDownLatch done = new CountDownLatch(threads);
+
+        for (int t = 0; t < threads; t++) {
+            int offset = t * perThread;
+            new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    queue.add(offset + i);
+                }
+                done.countDown();
+            }).start();
+        }
+
+        List<Integer> admitted = new ArrayList<>();
+
+        // the scheduler keeps polling while viewers are queued
+        while (done.getCount() > 0 || queue.size() > 0) {
+            admitted.addAll(queue.poll(50));
+        }
+
+        done.await();
+        admitted.addAll(queue.poll(0));
+
+        assertEquals(threads * perThread, admitted.size());
+        assertEquals(threads * perThread, admitted.stream().distinct().count());
+        // every started task is cancelled once the queue is empty
+        assertEquals(started.get(), cancelled.get());
+        assertFalse(queue.isScheduled());
+    }
+}
@@ -0,0 +1,114 @@
+package me.eternalhuman.packetboard;
+
+import me.eternalhuman.packetboard.text.AnimationClock;
+import me.eternalhuman.packetboard.text.FrameIterator;
+import me.eternalhuman.packetboard.text.TextFrame;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class AnimationClockTest {
+
+    @Test
+    public void testFrameChanges() {
+        AnimationClock clock = new AnimationClock();
+        FrameIterator iterator = new FrameIterator(Arrays.asList(TextFrame.of("a", 3), TextFrame.of("b", 1)));
+
+        AnimationClock.Animation animation = clock.register(iterator);
+        // registering twice doesn't advance the animation twice
+        assertSame(animation, clock.register(iterator));
+
+        List<String> changes = new ArrayList<>();
+        animation.addListener(changes::add);
+
+        assertEquals("a", animation.getFrame());
+
+        for (int i = 0; i < 4; i++) {
+            clock.tick();
+        }
+
+        // frame held for 3 ticks is reported once
+        assertEquals(Arrays.asList("b", "a"), changes);
+        assertEquals("a", animation.getFrame());
+
+        // registered twice, so it's removed by the second release
+        assertFalse(clock.unregister(iterator));
+        assertFalse(clock.isEmpty());
+        assertTrue(clock.unregister(iterator));
+        assertTrue(clock.isEmpty());
+    }
+
+    @Test
+    public void testSharedAnimationAdvancesOnce() {
+        AnimationClock clock = new AnimationClock();
+        FrameIterator iterator = new FrameIterator(Arrays.asList(
+                TextFrame.of("a", 1), TextFrame.of("b", 1), TextFrame.of("c", 1)));
+
+        // two boards showing the same animation
+        AnimationClock.Animation first = clock.register(iterator);
+        AnimationClock.Animation second = clock.register(iterator);
+        assertSame(first, second);
+
+        clock.tick();
+        assertEquals("b", first.getFrame());
+
+        assertFalse(clock.unregister(iterator));
+        clock.tick();
+        assertEquals("c", second.getFrame());
+
+        assertTrue(clock.unregister(iterator));
+        // releasing an animation which isn't registered does nothing
+        assertFalse(clock.unregister(iterator));
+    }
+
+    @Test
+    public void testAnimationsAreKeyedByIdentity() {
+        AnimationClock clock = new AnimationClock();
+        List<String> frames = Arrays.asList("a", "b");
+
+        // equal iterators are separate animations
+        AnimationClock.Animation first = clock.register(new EqualIterator(frames));
+        AnimationClock.Animation second = clock.register(new EqualIterator(frames));
+        assertNotSame(first, second);
+
+        clock.tick();
+        assertEquals("b", first.getFrame());
+        assertEquals("b", second.getFrame());
+    }
+
+    private static final class EqualIterator implements Iterator<String> {
+
+        private final List<String> frames;
+        private int index;
+
+        EqualIterator(List<String> frames) {
+            this.frames = frames;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return true;
+        }
+
+        @Override
+        public String next() {
+            return frames.get(index++ % frames.size());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof EqualIterator && ((EqualIterator) o).frames.equals(frames);
+        }
+
+        @Override
+        public int hashCode() {
+            return frames.hashCode();
+        }
+    }
+
+}
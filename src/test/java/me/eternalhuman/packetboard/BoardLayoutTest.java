@@ -0,0 +1,59 @@
+package me.eternalhuman.packetboard;
+
+import me.eternalhuman.packetboard.text.provider.AdventureTextProvider;
+import net.kyori.adventure.text.Component;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class BoardLayoutTest {
+
+    private static final LineTemplates TEMPLATES = new LineTemplates("PB-test");
+
+    private static BoardLine<Component, Object> line(int index) {
+        return new BoardLine<>(player -> Component.empty(), TEMPLATES, false, index,
+                new AdventureTextProvider(), player -> true);
+    }
+
+    @Test
+    public void testEditsKeepScoresOfLines() {
+        BoardLine<Component, Object> a = line(0);
+        BoardLine<Component, Object> b = line(1);
+        BoardLine<Component, Object> c = line(2);
+
+        BoardLayout<Component, Object> layout = BoardLayout.<Component, Object>empty().add(a).add(b).add(c).layOut(false);
+        assertEquals(3, layout.score(0));
+        assertEquals(1, layout.score(2));
+        // nothing to lay out
+        assertSame(layout, layout.layOut(false));
+
+        BoardLayout<Component, Object> moved = layout.move(2, 0);
+        assertEquals(Arrays.asList(c, a, b), moved.asList());
+        // scores move with the lines until the layout is laid out again
+        assertEquals(1, moved.score(0));
+        assertEquals(3, moved.score(1));
+
+        BoardLayout<Component, Object> laidOut = moved.layOut(false);
+        assertEquals(3, laidOut.score(0));
+        assertEquals(2, laidOut.score(1));
+
+        BoardLayout<Component, Object> removed = laidOut.remove(1);
+        assertEquals(Arrays.asList(c, b), removed.asList());
+        assertEquals(0, removed.freeIndex());
+    }
+
+    @Test
+    public void testStableLayout() {
+        BoardLayout<Component, Object> layout = BoardLayout.<Component, Object>empty().add(line(0)).add(line(1));
+        assertEquals(-1, layout.score(1));
+
+        BoardLayout<Component, Object> laidOut = layout.layOut(true);
+        assertEquals(0, laidOut.score(0));
+        assertEquals(0, laidOut.score(1));
+        // moves don't change scores
+        BoardLayout<Component, Object> moved = laidOut.move(1, 0);
+        assertSame(moved, moved.layOut(true));
+    }
+}
@@ -0,0 +1,122 @@
+package me.eternalhuman.packetboard;
+
+import me.eternalhuman.packetboard.pager.BoardPager;
+import me.eternalhuman.packetboard.protocol.PacketIds;
+import me.eternalhuman.packetboard.text.provider.AdventureTextProvider;
+import net.kyori.adventure.text.Component;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BoardPagerTest {
+
+    private final TestServer.Scheduler platform = new TestServer.Scheduler(false);
+    private final Plugin plugin = TestServer.plugin(platform);
+
+    @Test
+    public void testPreloadedPageSwitchSendsDisplayOnly() {
+        BoardPager<Component, Player> pager = new BoardPager<>(pages(3), 0, plugin, true);
+        Player player = TestViewers.join();
+
+        pager.show(player);
+        assertTrue(TestViewers.sent(player).contains(PacketIds.UPDATE_TEAMS));
+
+        pager.nextPage(player);
+        assertEquals(1, pager.getPage(player));
+        assertEquals(Collections.singletonList(PacketIds.DISPLAY_OBJECTIVES), TestViewers.sent(player));
+
+        pager.setPage(player, 0);
+        assertEquals(0, pager.getPage(player));
+        assertEquals(Collections.singletonList(PacketIds.DISPLAY_OBJECTIVES), TestViewers.sent(player));
+    }
+
+    @Test
+    public void testViewersSwitchInTheirPhase() {
+        int delay = 4;
+        BoardPager<Component, Player> pager = new BoardPager<>(pages(2), delay, plugin);
+        List<Player> players = new ArrayList<>();
+
+        for (int i = 0; i < 16; i++) {
+            Player player = TestViewers.join();
+            players.add(player);
+            pager.show(player);
+        }
+
+        int[] switches = new int[players.size()];
+
+        for (int tick = 1; tick <= delay * 3; tick++) {
+            int[] pages = pages(pager, players);
+            platform.tick();
+            int[] turned = pages(pager, players);
+
+            for (int i = 0; i < players.size(); i++) {
+                if (turned[i] != pages[i]) {
+                    switches[i]++;
+                    // the same tick as the staggered updates of the viewer
+                    int phase = TestViewers.viewer(players.get(i).getUniqueId()).getPhase();
+                    assertEquals(phase % delay, tick % delay);
+                }
+            }
+        }
+
+        for (int count : switches) {
+            assertEquals(3, count);
+        }
+    }
+
+    @Test
+    public void testViewerWhoQuitIsShownAgain() {
+        BoardPager<Component, Player> pager = new BoardPager<>(pages(2), 0, plugin);
+        Player player = TestViewers.join();
+
+        pager.show(player);
+        pager.nextPage(player);
+        TestViewers.quit(player);
+
+        assertEquals(-1, pager.getPage(player));
+        assertTrue(pager.getViewers().isEmpty());
+
+        TestViewers.join(player);
+        pager.show(player);
+
+        assertEquals(0, pager.getPage(player));
+        assertTrue(pager.getBoards().get(0).getViewers().contains(player.getUniqueId()));
+        assertTrue(TestViewers.sent(player).containsAll(
+                Arrays.asList(PacketIds.UPDATE_OBJECTIVES, PacketIds.DISPLAY_OBJECTIVES)));
+    }
+
+    private List<Board<Component, Player>> pages(int count) {
+        List<Board<Component, Player>> pages = new ArrayList<>();
+
+        for (int page = 1; page <= count; page++) {
+            Board<Component, Player> board = Board.<Component, Player>builder()
+                    .title(Component.text("Page " + page))
+                    .plugin(plugin)
+                    .textProvider(new AdventureTextProvider())
+                    .build();
+
+            board.addTextLine("Line of page " + page);
+            board.updateAllLines();
+            pages.add(board);
+        }
+
+        return pages;
+    }
+
+    private static int[] pages(BoardPager<Component, Player> pager, List<Player> players) {
+        int[] pages = new int[players.size()];
+
+        for (int i = 0; i < pages.length; i++) {
+            pages[i] = pager.getPage(players.get(i));
+        }
+
+        return pages;
+    }
+}
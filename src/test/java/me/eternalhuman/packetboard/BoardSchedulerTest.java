@@ -0,0 +1,81 @@
+package me.eternalhuman.packetboard;
+
+import me.eternalhuman.packetboard.text.provider.AdventureTextProvider;
+import net.kyori.adventure.text.Component;
+import org.bukkit.entity.Player;
+import org.bukkit.event.server.PluginDisableEvent;
+import org.bukkit.plugin.Plugin;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class BoardSchedulerTest {
+
+    private final TestServer.Scheduler platform = new TestServer.Scheduler(false);
+    private final Plugin plugin = TestServer.plugin(platform);
+
+    @Test
+    public void testBoardsUpdateInParallel() {
+        AtomicInteger first = new AtomicInteger();
+        AtomicInteger second = new AtomicInteger();
+        board(first).updateLinesPeriodically(0, 1);
+        board(second).updateLinesPeriodically(0, 1);
+
+        platform.runTimers();
+
+        // the tick only hands the cycles over, each board gets its own task
+        assertEquals(2, platform.pendingAsync());
+        assertEquals(0, first.get() + second.get());
+
+        platform.runAsync();
+        assertEquals(1, first.get());
+        assertEquals(1, second.get());
+    }
+
+    @Test
+    public void testCyclesOfBoardRunInOrder() {
+        AtomicInteger renders = new AtomicInteger();
+        board(renders).updateLinesPeriodically(0, 1);
+
+        platform.runTimers();
+        platform.runTimers();
+
+        // the second cycle waits for the running one instead of overlapping it
+        assertEquals(1, platform.pendingAsync());
+
+        platform.runAsync();
+        assertEquals(2, renders.get());
+
+        platform.runTimers();
+        assertEquals(1, platform.pendingAsync());
+    }
+
+    @Test
+    public void testDisabledPluginStopsTicking() {
+        BoardScheduler scheduler = BoardScheduler.of(plugin);
+        board(new AtomicInteger()).updateLinesPeriodically(0, 1);
+        assertTrue(platform.isTicking());
+
+        TestServer.callEvent(new PluginDisableEvent(plugin));
+
+        assertFalse(platform.isTicking());
+        // a reloaded plugin gets a new scheduler
+        assertNotSame(scheduler, BoardScheduler.of(plugin, platform::foliaLib));
+    }
+
+    private Board<Component, Player> board(AtomicInteger renders) {
+        Board<Component, Player> board = Board.<Component, Player>builder()
+                .title(Component.text("Board"))
+                .plugin(plugin)
+                .textProvider(new AdventureTextProvider())
+                .build();
+
+        board.addUpdatableLine(player -> Component.text("Render " + renders.incrementAndGet()));
+        board.addViewer(TestViewers.join());
+        renders.set(0);
+
+        return board;
+    }
+}
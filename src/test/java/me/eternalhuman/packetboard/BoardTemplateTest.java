@@ -0,0 +1,122 @@
+package me.eternalhuman.packetboard;
+
+import me.eternalhuman.packetboard.text.TextProvider;
+import me.eternalhuman.packetboard.text.provider.AdventureTextProvider;
+import net.kyori.adventure.text.Component;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class BoardTemplateTest {
+
+    @Test(expected = IllegalStateException.class)
+    public void testConfigureLineNeedsLine() {
+        BoardTemplate.<String, Object>builder()
+                .configureLine(line -> {
+                });
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeUpdatePeriod() {
+        BoardTemplate.<String, Object>builder().updatePeriod(-1);
+    }
+
+    @Test
+    public void testOptionsConfigureBoard() {
+        AtomicReference<Board.Builder<String, Object>> options = new AtomicReference<>();
+
+        BoardTemplate.Builder<String, Object> builder = BoardTemplate.<String, Object>builder();
+        assertSame(builder, builder.options(options::set));
+        assertSame(builder, builder.options(board -> assertSame(options.get(), board)));
+
+        // the same board builder collects every option
+        assertNotNull(options.get());
+        assertSame(options.get(), options.get().batchPackets(false));
+    }
+
+    @Test
+    public void testBuildValidatesBeforeCreatingLines() {
+        BoardTemplate.Builder<String, Object> builder = BoardTemplate.<String, Object>builder()
+                .title("Title")
+                .textLine("First")
+                .blankLine()
+                .configureLine(line -> fail("Line configured without a board"))
+                .updatePeriod(20);
+
+        try {
+            builder.build();
+            fail("Built without a plugin");
+        } catch (NullPointerException exception) {
+            assertEquals("Plugin cannot be null", exception.getMessage());
+        }
+    }
+
+    @Test
+    public void testBuildNeedsTitle() {
+        BoardTemplate.Builder<String, Object> builder = BoardTemplate.<String, Object>builder()
+                .plugin(unused(Plugin.class))
+                .textProvider(unused(TextProvider.class))
+                .textLine("Line");
+
+        try {
+            builder.build();
+            fail("Built without a title");
+        } catch (IllegalArgumentException exception) {
+            assertEquals("Title, titleIterator, or titleFunction must be set", exception.getMessage());
+        }
+    }
+
+    @Test
+    public void testViewersShareOneBoard() {
+        Player first = TestViewers.join();
+        Player second = TestViewers.join();
+
+        BoardTemplate<Component, Player> template = BoardTemplate.<Component, Player>builder()
+                .title(Component.text("Title"))
+                .plugin(TestServer.plugin(new TestServer.Scheduler(false)))
+                .textProvider(new AdventureTextProvider())
+                .textLine("Shared")
+                .conditionalLine(player -> Component.text("First only"), player -> player == first)
+                .build();
+
+        template.show(first);
+        template.show(second);
+
+        Board<Component, Player> board = template.getBoard();
+        assertEquals(new HashSet<>(Arrays.asList(first.getUniqueId(), second.getUniqueId())), board.getViewers());
+
+        // lines are defined once, only their client state is per viewer
+        List<BoardLine<Component, Player>> lines = board.getLines();
+        LineState firstLines = board.getViewer(first.getUniqueId()).getLines();
+        LineState secondLines = board.getViewer(second.getUniqueId()).getLines();
+        int shared = lines.get(0).getIndex();
+        int conditional = lines.get(1).getIndex();
+
+        assertEquals(2, lines.size());
+        assertNotSame(firstLines, secondLines);
+        assertTrue(firstLines.isVisible(shared));
+        assertTrue(secondLines.isVisible(shared));
+        assertTrue(firstLines.isVisible(conditional));
+        assertTrue(secondLines.isCreated(conditional));
+        assertFalse(secondLines.isVisible(conditional));
+
+        template.hide(first);
+        assertEquals(1, board.getViewers().size());
+        assertTrue(template.isShown(second));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T unused(Class<?> type) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            throw new UnsupportedOperationException(method.getName());
+        });
+    }
+}
@@ -0,0 +1,97 @@
+package me.eternalhuman.packetboard;
+
+import me.eternalhuman.packetboard.protocol.PacketIds;
+import me.eternalhuman.packetboard.text.provider.AdventureTextProvider;
+import net.kyori.adventure.text.Component;
+import org.bukkit.entity.Player;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class BoardTest {
+
+    private final TestServer.Scheduler scheduler = new TestServer.Scheduler(false);
+    private final Board<Component, Player> board = Board.<Component, Player>builder()
+            .title(Component.text("Board"))
+            .plugin(TestServer.plugin(scheduler))
+            .textProvider(new AdventureTextProvider())
+            .build();
+
+    @Test
+    public void testViewerBeingAddedGetsMissedLayout() {
+        Player first = TestViewers.join();
+        Player second = TestViewers.join();
+        AtomicReference<BoardLine<Component, Player>> removed = new AtomicReference<>();
+
+        board.addUpdatableLine(player -> {
+            // the line is removed while both viewers are being added
+            if (player == second && removed.get() != null) {
+                board.removeLine(removed.getAndSet(null));
+            }
+            return Component.text("Line");
+        });
+        BoardLine<Component, Player> line = board.addTextLine("Removed");
+        board.updateAllLines();
+
+        removed.set(line);
+        board.addViewers(Arrays.asList(first, second));
+
+        assertNull(removed.get());
+        assertEquals(1, board.getLines().size());
+
+        for (Player player : Arrays.asList(first, second)) {
+            LineState lines = board.getViewer(player.getUniqueId()).getLines();
+            assertFalse(lines.isCreated(line.getIndex()));
+        }
+    }
+
+    @Test
+    public void testLateUpdateDoesNotRestoreRemovedLine() throws Exception {
+        Player player = TestViewers.join();
+        AtomicBoolean block = new AtomicBoolean();
+        CountDownLatch rendering = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        BoardLine<Component, Player> line = board.addUpdatableLine(viewer -> {
+            if (block.compareAndSet(true, false)) {
+                rendering.countDown();
+                release.await();
+                return Component.text("Updated");
+            }
+            return Component.text("Line");
+        });
+        board.updateAllLines();
+        board.addViewer(player);
+        TestViewers.sent(player);
+
+        block.set(true);
+        Thread update = new Thread(() -> board.updateLine(line));
+        update.start();
+        rendering.await();
+
+        Thread remove = new Thread(() -> board.removeLine(line));
+        remove.start();
+
+        // the removal waits until the viewer has the update
+        while (remove.getState() != Thread.State.BLOCKED) {
+            assertTrue(remove.isAlive());
+            Thread.yield();
+        }
+
+        release.countDown();
+        update.join();
+        remove.join();
+
+        LineState lines = board.getViewer(player.getUniqueId()).getLines();
+        assertFalse(lines.isCreated(line.getIndex()));
+
+        List<PacketIds> sent = TestViewers.sent(player);
+        assertEquals(Arrays.asList(PacketIds.UPDATE_TEAMS, PacketIds.RESET_SCORE, PacketIds.UPDATE_TEAMS), sent);
+    }
+}
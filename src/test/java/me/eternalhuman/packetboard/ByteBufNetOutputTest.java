@@ -0,0 +1,101 @@
+package me.eternalhuman.packetboard;
+
+import com.viaversion.nbt.tag.IntArrayTag;
+import com.viaversion.nbt.tag.StringTag;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.Unpooled;
+import me.eternalhuman.packetboard.util.buffer.ByteBufNetOutput;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class ByteBufNetOutputTest {
+
+    private static final int[] VAR_INTS = {0, 1, 127, 128, 255, 2097151, 2097152, 268435455, 268435456,
+            Integer.MAX_VALUE, -1, Integer.MIN_VALUE};
+
+    @Test
+    public void testVarInt() {
+        for (int value : VAR_INTS) {
+            ByteBuf buf = Unpooled.buffer();
+            new ByteBufNetOutput(buf).writeVarInt(value);
+
+            ByteBuf expected = Unpooled.buffer();
+            int i = value;
+            while ((i & ~0x7F) != 0) {
+                expected.writeByte((i & 0x7F) | 0x80);
+                i >>>= 7;
+            }
+            expected.writeByte(i);
+
+            assertEquals(String.valueOf(value), expected, buf);
+        }
+    }
+
+    @Test
+    public void testStrings() throws IOException {
+        for (String s : new String[]{"", "PB-abc", "§eЖук \u0000 😀"}) {
+            ByteBuf buf = Unpooled.buffer();
+            ByteBufNetOutput output = new ByteBufNetOutput(buf);
+            output.writeString(s);
+            output.writeUTF(s);
+
+            byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+            ByteBuf expected = Unpooled.buffer();
+            new ByteBufNetOutput(expected).writeVarInt(utf8.length);
+            expected.writeBytes(utf8);
+            new ByteBufOutputStream(expected).writeUTF(s);
+
+            assertEquals(s, expected, buf);
+        }
+    }
+
+    @Test
+    public void testNoGarbage() {
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+        ByteBuf buf = Unpooled.directBuffer(1024);
+        StringTag stringTag = new StringTag("{\"text\":\"Hello\"}");
+        IntArrayTag arrayTag = new IntArrayTag(new int[]{1, 2, 3, 4});
+
+        Runnable packet = () -> {
+            buf.clear();
+            ByteBufNetOutput output = ByteBufNetOutput.acquire(buf);
+            output.writeVarInt(0x5C);
+            output.writeString("PB-abc0");
+            output.writeByte(2);
+            output.writeString("{\"text\":\"§eOnline: §f120 Жук\"}");
+            output.writeUTF("minecraft:uniform");
+            output.writeVarInt(268435456);
+            output.writeAnyTag(stringTag, false);
+            output.writeAnyTag(arrayTag, false);
+            output.release();
+        };
+
+        for (int i = 0; i < 100_000; i++) {
+            packet.run();
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+
+        for (int i = 0; i < 100_000; i++) {
+            packet.run();
+        }
+
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        buf.release();
+
+        // anything per packet would be megabytes here
+        assertTrue("Allocated " + allocated + " bytes", allocated < 64 * 1024);
+    }
+}
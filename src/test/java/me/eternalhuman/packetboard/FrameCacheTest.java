@@ -0,0 +1,88 @@
+package me.eternalhuman.packetboard;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import me.eternalhuman.packetboard.protocol.PacketTemplate;
+import me.eternalhuman.packetboard.text.FrameCache;
+import me.eternalhuman.packetboard.text.FrameIterator;
+import me.eternalhuman.packetboard.text.TextFrame;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class FrameCacheTest {
+
+    @Test
+    public void testFramesAreCompiledOnce() {
+        FrameIterator iterator = new FrameIterator(Arrays.asList(
+                TextFrame.of("a", 1), TextFrame.of("b", 1), TextFrame.of("a", 1), TextFrame.of("b", 1)));
+
+        List<String> compiled = new ArrayList<>();
+        FrameCache<String> cache = new FrameCache<>(frame -> {
+            compiled.add(frame);
+            return frame.toUpperCase();
+        });
+
+        for (int i = 0; i < 8; i++) {
+            String frame = iterator.next();
+            assertEquals(frame.toUpperCase(), cache.get(frame));
+        }
+
+        assertEquals(Arrays.asList("a", "b"), compiled);
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testPacketBytesAreReused() {
+        FrameIterator iterator = new FrameIterator(Arrays.asList(TextFrame.of("first", 1), TextFrame.of("second", 1)));
+
+        List<String> encoded = new ArrayList<>();
+        FrameCache<PacketTemplate> cache = new FrameCache<>(frame -> PacketTemplate.encode(output -> {
+            encoded.add(frame);
+            output.writeString(frame);
+        }, null));
+
+        Map<String, PacketTemplate> templates = new HashMap<>();
+        Map<String, byte[]> packets = new HashMap<>();
+
+        for (int i = 0; i < 6; i++) {
+            String frame = iterator.next();
+            PacketTemplate template = cache.get(frame);
+
+            // every replay of a frame copies the bytes of the same template
+            PacketTemplate first = templates.putIfAbsent(frame, template);
+            if (first != null) {
+                assertSame(first, template);
+            }
+
+            ByteBuf buf = Unpooled.buffer();
+            try {
+                template.writePrefix(buf);
+                template.writeSuffix(buf);
+                byte[] bytes = ByteBufUtil.getBytes(buf);
+                byte[] previous = packets.putIfAbsent(frame, bytes);
+
+                if (previous != null) {
+                    assertArrayEquals(previous, bytes);
+                }
+            } finally {
+                buf.release();
+            }
+        }
+
+        assertEquals(Arrays.asList("first", "second"), encoded);
+
+        byte[] bytes = packets.get("second");
+        // a string is written as its var-int length and UTF-8 bytes
+        assertEquals(6, bytes[0]);
+        assertEquals("second", new String(bytes, 1, bytes.length - 1, StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,60 @@
+package me.eternalhuman.packetboard;
+
+import com.google.gson.JsonParser;
+import com.viaversion.nbt.io.NBTIO;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.Unpooled;
+import me.eternalhuman.packetboard.util.JsonNbtTranscoder;
+import me.eternalhuman.packetboard.util.NbtComponentSerializer;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class JsonNbtTranscoderTest {
+
+    @Test
+    public void testSameAsTreeConversion() throws IOException {
+        String[] components = {
+                "{\"text\":\"\"}",
+                "\"plain\"",
+                "{\"text\":\"Hello \\u00a7 world\",\"bold\":true,\"italic\":false,\"color\":\"#12AB34\"}",
+                "{\"translate\":\"key.jump\",\"with\":[\"a\",\"b\"],\"text\":\"ignored\"}",
+                "{\"keybind\":\"key.jump\",\"type\":\"keybind\"}",
+                "{\"text\":\"\",\"extra\":[{\"text\":\"a\",\"extra\":[]},{\"score\":{\"name\":\"x\",\"objective\":\"y\"}}]}",
+                "{\"text\":\"number\",\"font\":\"minecraft:uniform\",\"custom\":42}",
+                "{\"text\":\"жук 😀\"}",
+        };
+
+        for (String json : components) {
+            ByteBuf streamed = Unpooled.buffer();
+            assertTrue(json, JsonNbtTranscoder.transcode(json, streamed));
+            assertEquals(json, treeConversion(json), streamed);
+        }
+    }
+
+    @Test
+    public void testFallback() {
+        String[] components = {
+                "{\"text\":\"\",\"extra\":[\"a\",{\"text\":\"b\"}]}",
+                "{\"text\":\"\",\"hoverEvent\":{\"action\":\"show_entity\",\"contents\":{\"id\":\"00000000-0000-0000-0000-000000000001\"}}}",
+                "{\"text\":null}",
+                "{\"text\":",
+        };
+
+        for (String json : components) {
+            ByteBuf buf = Unpooled.buffer().writeByte(42);
+            assertFalse(json, JsonNbtTranscoder.transcode(json, buf));
+            assertEquals(1, buf.writerIndex());
+        }
+    }
+
+    private static ByteBuf treeConversion(String json) throws IOException {
+        ByteBuf buf = Unpooled.buffer();
+        NBTIO.writeTag(new ByteBufOutputStream(buf),
+                NbtComponentSerializer.jsonComponentToTag(JsonParser.parseString(json)), false);
+        return buf;
+    }
+}
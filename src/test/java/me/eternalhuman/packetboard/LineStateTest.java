@@ -0,0 +1,91 @@
+package me.eternalhuman.packetboard;
+
+import me.eternalhuman.packetboard.protocol.ScoreNumberFormat;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LineStateTest {
+
+    @Test
+    public void testInitialState() {
+        LineState state = new LineState();
+
+        for (int line = 0; line < LineState.LINES; line++) {
+            assertFalse(state.isCreated(line));
+            assertFalse(state.isVisible(line));
+            assertEquals(-1, state.score(line));
+            assertEquals(LineState.NONE, state.textHash(line));
+            assertFalse(state.hasScore(line, -1, null, LineState.NONE));
+        }
+    }
+
+    @Test
+    public void testScoreAndNumberFormat() {
+        LineState state = new LineState();
+        long hash = LineState.hash("{\"text\":\"10\"}");
+
+        state.setText(3, LineState.hash("text"));
+        state.setScore(3, 7, ScoreNumberFormat.FIXED, hash);
+
+        assertTrue(state.isCreated(3));
+        assertTrue(state.isVisible(3));
+        assertTrue(state.hasScore(3, 7, ScoreNumberFormat.FIXED, hash));
+
+        // any difference needs a new score packet
+        assertFalse(state.hasScore(3, 8, ScoreNumberFormat.FIXED, hash));
+        assertFalse(state.hasScore(3, 7, ScoreNumberFormat.STYLED, hash));
+        assertFalse(state.hasScore(3, 7, null, hash));
+        assertFalse(state.hasScore(3, 7, ScoreNumberFormat.FIXED, LineState.hash("{\"text\":\"11\"}")));
+
+        // other lines are untouched
+        assertFalse(state.isCreated(2));
+        assertFalse(state.isVisible(4));
+
+        state.setScore(3, 7, null, LineState.NONE);
+        assertTrue(state.hasScore(3, 7, null, LineState.NONE));
+    }
+
+    @Test
+    public void testHideKeepsTeam() {
+        LineState state = new LineState();
+        long text = LineState.hash("text");
+
+        state.setText(0, text);
+        state.setScore(0, 1, ScoreNumberFormat.BLANK, LineState.NONE);
+        state.hide(0);
+
+        assertTrue(state.isCreated(0));
+        assertFalse(state.isVisible(0));
+        assertEquals(-1, state.score(0));
+        assertEquals(text, state.textHash(0));
+        assertFalse(state.hasScore(0, 1, ScoreNumberFormat.BLANK, LineState.NONE));
+
+        // showing it again keeps the created flag
+        state.setScore(0, 1, ScoreNumberFormat.BLANK, LineState.NONE);
+        assertTrue(state.isCreated(0));
+        assertTrue(state.hasScore(0, 1, ScoreNumberFormat.BLANK, LineState.NONE));
+    }
+
+    @Test
+    public void testReset() {
+        LineState state = new LineState();
+
+        state.setText(15, LineState.hash("text"));
+        state.setScore(15, 3, ScoreNumberFormat.STYLED, LineState.hash("format"));
+        state.reset(15);
+
+        assertFalse(state.isCreated(15));
+        assertFalse(state.isVisible(15));
+        assertEquals(-1, state.score(15));
+        assertEquals(LineState.NONE, state.textHash(15));
+    }
+
+    @Test
+    public void testHash() {
+        assertEquals(LineState.NONE, LineState.hash(null));
+        assertNotEquals(LineState.NONE, LineState.hash(""));
+        assertEquals(LineState.hash("Line"), LineState.hash("Line"));
+        assertNotEquals(LineState.hash("Line 1"), LineState.hash("Line 2"));
+    }
+}
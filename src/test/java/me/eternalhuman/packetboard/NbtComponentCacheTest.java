@@ -0,0 +1,69 @@
+package me.eternalhuman.packetboard;
+
+import com.google.gson.JsonParser;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import me.eternalhuman.packetboard.util.NbtComponentSerializer;
+import me.eternalhuman.packetboard.util.buffer.ByteBufNetOutput;
+import me.eternalhuman.packetboard.util.buffer.NbtComponentCache;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class NbtComponentCacheTest {
+
+    @Test
+    public void testCachedEncoding() {
+        String json = "{\"text\":\"Cached\",\"color\":\"gold\",\"extra\":[{\"text\":\"!\",\"bold\":true}]}";
+
+        ByteBuf expected = Unpooled.buffer();
+        new ByteBufNetOutput(expected).writeAnyTag(NbtComponentSerializer.jsonComponentToTag(JsonParser.parseString(json)), false);
+
+        long misses = NbtComponentCache.getMissCount();
+        long hits = NbtComponentCache.getHitCount();
+
+        for (int i = 0; i < 3; i++) {
+            ByteBuf buf = Unpooled.buffer();
+            new ByteBufNetOutput(buf).writeComponent(json);
+            assertEquals(expected, buf);
+        }
+
+        // the first sighting is encoded by the caller, the second one is cached
+        assertEquals(misses + 2, NbtComponentCache.getMissCount());
+        assertEquals(hits + 1, NbtComponentCache.getHitCount());
+    }
+
+    @Test
+    public void testSingleSightingIsNotCached() {
+        NbtComponentCache.invalidateAll();
+        long size = NbtComponentCache.size();
+
+        for (int i = 0; i < 100; i++) {
+            String json = "{\"text\":\"Balance: " + i + "\"}";
+
+            ByteBuf expected = Unpooled.buffer();
+            new ByteBufNetOutput(expected).writeAnyTag(NbtComponentSerializer.jsonComponentToTag(JsonParser.parseString(json)), false);
+
+            // encoded straight into the buffer of the caller
+            ByteBuf buf = Unpooled.buffer();
+            new ByteBufNetOutput(buf).writeComponent(json);
+            assertEquals(expected, buf);
+        }
+
+        assertEquals(size, NbtComponentCache.size());
+
+        // the second sighting is cached
+        String json = "{\"text\":\"Balance: 0\"}";
+        assertNotNull(NbtComponentCache.get(json));
+        assertEquals(size + 1, NbtComponentCache.size());
+    }
+
+    @Test
+    public void testPinned() {
+        NbtComponentCache.invalidateAll();
+
+        long misses = NbtComponentCache.getMissCount();
+        assertNotNull(NbtComponentCache.get(NbtComponentCache.EMPTY_TEXT));
+        assertEquals(misses, NbtComponentCache.getMissCount());
+    }
+}
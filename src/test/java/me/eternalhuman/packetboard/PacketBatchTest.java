@@ -0,0 +1,108 @@
+package me.eternalhuman.packetboard;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.DefaultEventLoop;
+import io.netty.channel.EventLoop;
+import io.netty.channel.embedded.EmbeddedChannel;
+import me.eternalhuman.packetboard.protocol.ChannelInjector;
+import me.eternalhuman.packetboard.protocol.PacketBatch;
+import me.eternalhuman.packetboard.protocol.PacketIds;
+import me.eternalhuman.packetboard.protocol.ProtocolProfile;
+import me.eternalhuman.packetboard.protocol.ViewerSession;
+import org.bukkit.entity.Player;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class PacketBatchTest {
+
+    @Test
+    public void testBundleIsWrittenByOneEventLoopTask() {
+        Player player = TestViewers.join();
+        ViewerSession session = ChannelInjector.IMP.getSession(player);
+        EmbeddedChannel channel = TestViewers.channel(player);
+
+        try (PacketBatch ignored = PacketBatch.begin(true, true)) {
+            session.send(packet(PacketIds.UPDATE_TEAMS));
+            session.send(packet(PacketIds.UPDATE_SCORE));
+        }
+
+        // the updating thread writes nothing, so a packet which the server sends meanwhile stays out of the bundle
+        assertEquals(0, channel.unsafe().outboundBuffer().size());
+        channel.writeAndFlush(packet(PacketIds.DISPLAY_OBJECTIVES));
+
+        assertEquals(Arrays.asList(PacketIds.DISPLAY_OBJECTIVES, PacketIds.BUNDLE_DELIMITER, PacketIds.UPDATE_TEAMS,
+                PacketIds.UPDATE_SCORE, PacketIds.BUNDLE_DELIMITER), TestViewers.sent(player));
+    }
+
+    @Test
+    public void testEventLoopEncodesQueuedPackets() {
+        Player player = TestViewers.join();
+        ViewerSession session = ChannelInjector.IMP.getSession(player);
+        AtomicInteger encoded = new AtomicInteger();
+
+        try (PacketBatch ignored = PacketBatch.begin(true, false, true)) {
+            assertTrue(PacketBatch.isDeferred());
+
+            session.send(() -> {
+                encoded.incrementAndGet();
+                return packet(PacketIds.UPDATE_TEAMS);
+            });
+            session.send(packet(PacketIds.UPDATE_SCORE));
+        }
+
+        // packets are encoded by the single task of the event loop, in order
+        assertEquals(0, encoded.get());
+        assertEquals(Arrays.asList(PacketIds.UPDATE_TEAMS, PacketIds.UPDATE_SCORE), TestViewers.sent(player));
+        assertEquals(1, encoded.get());
+    }
+
+    @Test
+    public void testClosedChannelReleasesQueuedPackets() {
+        Player player = TestViewers.join();
+        ViewerSession session = ChannelInjector.IMP.getSession(player);
+        ByteBuf packet = packet(PacketIds.UPDATE_SCORE);
+
+        try (PacketBatch ignored = PacketBatch.begin(true, false, true)) {
+            session.send(packet);
+            TestViewers.channel(player).close();
+        }
+
+        assertEquals(0, packet.refCnt());
+    }
+
+    @Test
+    public void testRejectedTaskReleasesQueuedPackets() throws Exception {
+        EventLoop shutDown = new DefaultEventLoop();
+        shutDown.shutdownGracefully(0, 0, TimeUnit.SECONDS).sync();
+        AtomicBoolean gone = new AtomicBoolean();
+
+        // the event loop is gone while the channel is still open
+        ViewerSession session = TestViewers.session(UUID.randomUUID(), new EmbeddedChannel() {
+            @Override
+            public EventLoop eventLoop() {
+                return gone.get() ? shutDown : super.eventLoop();
+            }
+        });
+        ByteBuf packet = packet(PacketIds.UPDATE_SCORE);
+        gone.set(true);
+
+        try (PacketBatch ignored = PacketBatch.begin(true, false, true)) {
+            session.send(packet);
+        }
+
+        assertTrue(session.isActive());
+        assertEquals(0, packet.refCnt());
+    }
+
+    private static ByteBuf packet(PacketIds packet) {
+        return Unpooled.buffer().writeByte(ProtocolProfile.server().getPacketId(packet));
+    }
+}
@@ -0,0 +1,67 @@
+package me.eternalhuman.packetboard;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import me.eternalhuman.packetboard.protocol.PacketFanout;
+import me.eternalhuman.packetboard.protocol.ProtocolConstants;
+import me.eternalhuman.packetboard.protocol.ProtocolProfile;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class PacketFanoutTest {
+
+    @Test
+    public void testEncodeOncePerKey() {
+        PacketFanout fanout = new PacketFanout();
+        Object owner = new Object();
+        AtomicInteger encodes = new AtomicInteger();
+        ProtocolProfile modern = ProtocolProfile.of(ProtocolConstants.MINECRAFT_1_20_2);
+        ProtocolProfile legacy = ProtocolProfile.of(ProtocolConstants.MINECRAFT_1_12_2);
+
+        ByteBuf[] views = new ByteBuf[4];
+        for (int i = 0; i < 3; i++) {
+            views[i] = fanout.encode(owner, 0, modern, () -> {
+                encodes.incrementAndGet();
+                return Unpooled.buffer().writeInt(42);
+            });
+        }
+        views[3] = fanout.encode(owner, 0, legacy, () -> {
+            encodes.incrementAndGet();
+            return Unpooled.buffer().writeInt(12);
+        });
+
+        assertEquals(2, encodes.get());
+
+        // every view reads independently from the same memory
+        assertEquals(42, views[0].readInt());
+        assertEquals(42, views[1].readInt());
+        assertEquals(12, views[3].readInt());
+        assertEquals(4, views[0].refCnt());
+
+        fanout.release();
+        for (ByteBuf view : views) {
+            view.release();
+        }
+
+        assertEquals(0, views[0].refCnt());
+        assertEquals(0, views[3].refCnt());
+    }
+
+    @Test
+    public void testCompute() throws Throwable {
+        PacketFanout fanout = new PacketFanout();
+        Object owner = new Object();
+        AtomicInteger calls = new AtomicInteger();
+
+        assertEquals("text", fanout.compute(owner, 1, null, () -> {
+            calls.incrementAndGet();
+            return "text";
+        }));
+        assertEquals("text", fanout.compute(owner, 1, null, () -> "other"));
+        assertEquals("other", fanout.compute(new Object(), 1, null, () -> "other"));
+        assertEquals(1, calls.get());
+    }
+}
@@ -0,0 +1,61 @@
+package me.eternalhuman.packetboard;
+
+import me.eternalhuman.packetboard.protocol.PacketIds;
+import me.eternalhuman.packetboard.protocol.ProtocolConstants;
+import me.eternalhuman.packetboard.protocol.ProtocolProfile;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ProtocolProfileTest {
+
+    @Test
+    public void testPacketIds() {
+        assertEquals(0x44, ProtocolProfile.of(ProtocolConstants.MINECRAFT_1_12_2).getPacketId(PacketIds.UPDATE_TEAMS));
+        assertEquals(0x5C, ProtocolProfile.of(ProtocolConstants.MINECRAFT_1_20_2).getPacketId(PacketIds.UPDATE_TEAMS));
+        assertEquals(0x6C, ProtocolProfile.of(ProtocolConstants.MINECRAFT_1_21_11).getPacketId(PacketIds.UPDATE_SCORE));
+
+        assertEquals(-1, ProtocolProfile.of(ProtocolConstants.MINECRAFT_1_20_2).getPacketId(PacketIds.RESET_SCORE));
+        assertEquals(0x44, ProtocolProfile.of(ProtocolConstants.MINECRAFT_1_20_3).getPacketId(PacketIds.RESET_SCORE));
+
+        for (int protocol = ProtocolConstants.MINIMUM_SUPPORTED_VERSION;
+             protocol <= ProtocolConstants.MAXIMUM_SUPPORTED_VERSION; protocol++) {
+            ProtocolProfile profile = ProtocolProfile.of(protocol);
+
+            assertEquals(protocol, profile.getProtocolVersion());
+            assertEquals(PacketIds.UPDATE_OBJECTIVES.getPacketId(protocol), profile.getPacketId(PacketIds.UPDATE_OBJECTIVES));
+            assertEquals(PacketIds.DISPLAY_OBJECTIVES.getPacketId(protocol), profile.getPacketId(PacketIds.DISPLAY_OBJECTIVES));
+        }
+    }
+
+    @Test
+    public void testFeatures() {
+        ProtocolProfile legacy = ProtocolProfile.of(ProtocolConstants.MINECRAFT_1_12_2);
+        assertFalse(legacy.isJsonText());
+        assertFalse(legacy.isNbtComponents());
+
+        ProtocolProfile json = ProtocolProfile.of(ProtocolConstants.MINECRAFT_1_20_2);
+        assertTrue(json.isJsonText());
+        assertFalse(json.isNbtComponents());
+        assertFalse(json.isResetScorePacket());
+        assertTrue(json.isBundles());
+
+        assertFalse(ProtocolProfile.of(ProtocolConstants.MINECRAFT_1_19_3).isBundles());
+        assertEquals(0x00, ProtocolProfile.of(ProtocolConstants.MINECRAFT_1_19_4).getPacketId(PacketIds.BUNDLE_DELIMITER));
+
+        ProtocolProfile nbt = ProtocolProfile.of(ProtocolConstants.MINECRAFT_1_20_3);
+        assertTrue(nbt.isNbtComponents());
+        assertTrue(nbt.isNumberFormats());
+        assertTrue(nbt.isResetScorePacket());
+        assertFalse(nbt.isEnumTeamVisibility());
+
+        assertTrue(ProtocolProfile.of(ProtocolConstants.MINECRAFT_1_21_5).isEnumTeamVisibility());
+    }
+
+    @Test
+    public void testClamping() {
+        assertSame(ProtocolProfile.of(ProtocolConstants.MINIMUM_SUPPORTED_VERSION), ProtocolProfile.of(47));
+        assertSame(ProtocolProfile.of(ProtocolConstants.MAXIMUM_SUPPORTED_VERSION),
+                ProtocolProfile.of(ProtocolConstants.MAXIMUM_SUPPORTED_VERSION + 10));
+    }
+}
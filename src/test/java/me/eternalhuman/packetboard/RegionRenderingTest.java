@@ -0,0 +1,80 @@
+package me.eternalhuman.packetboard;
+
+import me.eternalhuman.packetboard.protocol.PacketIds;
+import me.eternalhuman.packetboard.text.provider.AdventureTextProvider;
+import net.kyori.adventure.text.Component;
+import org.bukkit.entity.Player;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class RegionRenderingTest {
+
+    private final TestServer.Scheduler platform = new TestServer.Scheduler(true);
+    private final Board<Component, Player> board = Board.<Component, Player>builder()
+            .title(Component.text("Board"))
+            .plugin(TestServer.plugin(platform))
+            .textProvider(new AdventureTextProvider())
+            .regionRendering(true)
+            .build();
+
+    @Test
+    public void testViewersAreRenderedByTheirRegions() {
+        AtomicInteger renders = new AtomicInteger();
+        BoardLine<Component, Player> line = board.addUpdatableLine(
+                player -> Component.text("Render " + renders.incrementAndGet()));
+        board.updateAllLines();
+
+        List<Player> players = Arrays.asList(TestViewers.join(), TestViewers.join());
+        for (Player player : players) {
+            board.addViewer(player);
+            TestViewers.sent(player);
+        }
+        // every render has a new text, so no update is skipped as unchanged
+        int before = renders.get();
+
+        board.updateLine(line);
+
+        // the updating thread only hands the viewers over to their regions
+        assertEquals(2, platform.pendingRegions());
+        assertEquals(before, renders.get());
+
+        platform.runRegions();
+        assertEquals(before + 2, renders.get());
+
+        for (Player player : players) {
+            // regions only collect the values, the event loop of the viewer encodes and writes them
+            assertEquals(0, TestViewers.channel(player).unsafe().outboundBuffer().size());
+            assertEquals(Collections.singletonList(PacketIds.UPDATE_TEAMS), TestViewers.sent(player));
+        }
+    }
+
+    @Test
+    public void testGlobalLineIsComputedOnce() {
+        AtomicInteger updates = new AtomicInteger();
+        BoardLine<Component, Player> line = board.addGlobalLine(
+                () -> Component.text("Update " + updates.incrementAndGet()));
+        board.updateAllLines();
+
+        List<Player> players = Arrays.asList(TestViewers.join(), TestViewers.join(), TestViewers.join());
+        for (Player player : players) {
+            board.addViewer(player);
+            TestViewers.sent(player);
+        }
+        int before = updates.get();
+
+        board.updateLine(line);
+        platform.runRegions();
+
+        // the regions share the value and the encoded packet of the update
+        assertEquals(before + 1, updates.get());
+        for (Player player : players) {
+            assertEquals(Collections.singletonList(PacketIds.UPDATE_TEAMS), TestViewers.sent(player));
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package me.eternalhuman.packetboard;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+import static org.junit.Assert.*;
+
+public class StaggeredUpdateTest {
+
+    private static final int VIEWERS = 1000;
+
+    @Test
+    public void testEveryViewerOncePerPeriod() {
+        List<ViewerState> viewers = viewers();
+        long period = 20;
+        BoardTask task = new BoardTask(null, null, BoardTask.Type.ALL_LINES, null, period, true, true);
+
+        int[] renders = new int[viewers.size()];
+        int[] slices = new int[(int) period];
+
+        // any window of a period renders each viewer exactly once
+        for (long tick = 137; tick < 137 + period; tick++) {
+            Predicate<ViewerState> slice = task.slice(tick);
+            assertNotNull(slice);
+
+            for (int i = 0; i < viewers.size(); i++) {
+                if (slice.test(viewers.get(i))) {
+                    renders[i]++;
+                    slices[(int) (tick % period)]++;
+                }
+            }
+        }
+
+        for (int count : renders) {
+            assertEquals(1, count);
+        }
+
+        // phases are spread, so no tick renders a large part of the viewers
+        for (int count : slices) {
+            assertTrue("Slice of " + count + " viewers", count > VIEWERS / period / 3 && count < VIEWERS / period * 3);
+        }
+    }
+
+    @Test
+    public void testPhaseIsStable() {
+        UUID uniqueId = UUID.randomUUID();
+        ViewerState first = TestViewers.viewer(uniqueId);
+        ViewerState second = TestViewers.viewer(uniqueId);
+
+        assertTrue(first.getPhase() >= 0);
+        // a viewer keeps its tick on every board
+        assertEquals(first.getPhase(), second.getPhase());
+    }
+
+    @Test
+    public void testOfflineUuidsAreSpread() {
+        // offline mode ids are name based and differ in a few bits only
+        List<ViewerState> viewers = new ArrayList<>();
+        for (int i = 0; i < VIEWERS; i++) {
+            viewers.add(TestViewers.viewer(UUID.nameUUIDFromBytes(("OfflinePlayer:Player" + i).getBytes())));
+        }
+
+        int period = 10;
+        int[] slices = new int[period];
+        for (ViewerState viewer : viewers) {
+            slices[viewer.getPhase() % period]++;
+        }
+
+        for (int count : slices) {
+            assertTrue("Slice of " + count + " viewers", count > VIEWERS / period / 3 && count < VIEWERS / period * 3);
+        }
+    }
+
+    @Test
+    public void testNotStaggered() {
+        BoardTask task = new BoardTask(null, null, BoardTask.Type.LINE, null, 20, true, false);
+
+        // all viewers are rendered when the task is due
+        assertNull(task.slice(5));
+    }
+
+    private static List<ViewerState> viewers() {
+        List<ViewerState> viewers = new ArrayList<>();
+
+        for (int i = 0; i < VIEWERS; i++) {
+            viewers.add(TestViewers.viewer(UUID.randomUUID()));
+        }
+
+        return viewers;
+    }
+}
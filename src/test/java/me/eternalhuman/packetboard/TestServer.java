@@ -0,0 +1,291 @@
+package me.eternalhuman.packetboard;
+
+import com.tcoded.folialib.FoliaLib;
+import com.tcoded.folialib.enums.EntityTaskResult;
+import com.tcoded.folialib.impl.PlatformScheduler;
+import com.tcoded.folialib.wrapper.task.WrappedTask;
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.bukkit.entity.Player;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.PluginManager;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Server of the tests: players joined by {@link TestViewers}, and plugins whose tasks run only when a test
+ * lets them, see {@link Scheduler}.
+ */
+final class TestServer {
+
+    private static final Logger LOGGER = Logger.getLogger("PacketBoard");
+    private static final Map<UUID, Player> PLAYERS = new ConcurrentHashMap<>();
+    private static final List<Listener> LISTENERS = new CopyOnWriteArrayList<>();
+
+    static {
+        PluginManager pluginManager = proxy(PluginManager.class, (method, args) -> {
+            if (method.getName().equals("registerEvents")) {
+                LISTENERS.add((Listener) args[0]);
+            }
+            return null;
+        });
+
+        Bukkit.setServer(proxy(Server.class, (method, args) -> {
+            switch (method.getName()) {
+                case "getName":
+                    return "Paper";
+                case "getVersion":
+                    return "git-Paper-496 (MC: 1.20.4)";
+                case "getBukkitVersion":
+                    return "1.20.4-R0.1-SNAPSHOT";
+                case "getLogger":
+                    return LOGGER;
+                case "getPluginManager":
+                    return pluginManager;
+                case "getPlayer":
+                    return PLAYERS.get((UUID) args[0]);
+                case "getOnlinePlayers":
+                    return new ArrayList<>(PLAYERS.values());
+                case "isPrimaryThread":
+                    return true;
+                default:
+                    return null;
+            }
+        }));
+    }
+
+    private TestServer() {
+
+    }
+
+    /**
+     * Creates a plugin whose board scheduler runs on the given scheduler.
+     */
+    static Plugin plugin(Scheduler scheduler) {
+        Plugin plugin = proxy(Plugin.class, (method, args) -> {
+            switch (method.getName()) {
+                case "getName":
+                    return "Test";
+                case "getServer":
+                    return Bukkit.getServer();
+                case "getLogger":
+                    return LOGGER;
+                case "isEnabled":
+                    return true;
+                default:
+                    return null;
+            }
+        });
+
+        BoardScheduler.of(plugin, scheduler::foliaLib);
+        return plugin;
+    }
+
+    static void join(Player player) {
+        PLAYERS.put(player.getUniqueId(), player);
+    }
+
+    static void quit(Player player) {
+        PLAYERS.remove(player.getUniqueId());
+    }
+
+    /**
+     * Calls the handlers of the event in the registered listeners.
+     */
+    static void callEvent(Event event) {
+        for (Listener listener : LISTENERS) {
+            for (Method method : listener.getClass().getMethods()) {
+                if (method.isAnnotationPresent(EventHandler.class)
+                        && method.getParameterTypes()[0].isInstance(event)) {
+                    try {
+                        // listeners are usually private classes
+                        method.setAccessible(true);
+                        method.invoke(listener, event);
+                    } catch (InvocationTargetException exception) {
+                        throw new IllegalStateException(exception.getCause());
+                    } catch (ReflectiveOperationException exception) {
+                        throw new IllegalStateException(exception);
+                    }
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                case "toString":
+                    return type.getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(proxy));
+                default:
+                    Object result = handler.handle(method, args);
+                    return result == null && method.getReturnType() == boolean.class ? false : result;
+            }
+        });
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        Object handle(Method method, Object[] args) throws Throwable;
+    }
+
+    /**
+     * Platform scheduler which only queues tasks, tests run them explicitly. Timers run by {@link #tick()}.
+     */
+    static final class Scheduler {
+
+        private final boolean folia;
+        private final List<Runnable> timers = new CopyOnWriteArrayList<>();
+        private final Queue<Runnable> nextTick = new ArrayDeque<>();
+        private final Queue<Runnable> async = new ArrayDeque<>();
+        private final Queue<Runnable> regions = new ArrayDeque<>();
+
+        Scheduler(boolean folia) {
+            this.folia = folia;
+        }
+
+        /**
+         * Runs the timers, e.g. the tick of a board scheduler, and every task which they have queued.
+         */
+        void tick() {
+            runTimers();
+            runAll();
+        }
+
+        void runTimers() {
+            for (Runnable timer : timers) {
+                timer.run();
+            }
+        }
+
+        void runAll() {
+            while (runAsync() + runNextTick() + runRegions() > 0) {
+                // tasks may queue further tasks
+            }
+        }
+
+        int runAsync() {
+            return run(async);
+        }
+
+        int runNextTick() {
+            return run(nextTick);
+        }
+
+        int runRegions() {
+            return run(regions);
+        }
+
+        int pendingAsync() {
+            synchronized (async) {
+                return async.size();
+            }
+        }
+
+        int pendingRegions() {
+            synchronized (regions) {
+                return regions.size();
+            }
+        }
+
+        boolean isTicking() {
+            return !timers.isEmpty();
+        }
+
+        private static int run(Queue<Runnable> queue) {
+            List<Runnable> tasks;
+
+            synchronized (queue) {
+                tasks = new ArrayList<>(queue);
+                queue.clear();
+            }
+
+            tasks.forEach(Runnable::run);
+            return tasks.size();
+        }
+
+        private static <T> CompletableFuture<T> queue(Queue<Runnable> queue, Consumer<WrappedTask> task, T result) {
+            CompletableFuture<T> future = new CompletableFuture<>();
+
+            synchronized (queue) {
+                queue.add(() -> {
+                    try {
+                        task.accept(null);
+                        future.complete(result);
+                    } catch (Throwable throwable) {
+                        future.completeExceptionally(throwable);
+                    }
+                });
+            }
+
+            return future;
+        }
+
+        @SuppressWarnings("unchecked")
+        FoliaLib foliaLib(Plugin plugin) {
+            PlatformScheduler scheduler = proxy(PlatformScheduler.class, (method, args) -> {
+                switch (method.getName()) {
+                    case "runTimerAsync":
+                    case "runTimer": {
+                        Runnable timer = (Runnable) args[0];
+                        timers.add(timer);
+                        return proxy(WrappedTask.class, (taskMethod, taskArgs) -> {
+                            if (taskMethod.getName().equals("cancel")) {
+                                timers.remove(timer);
+                            } else if (taskMethod.getName().equals("isCancelled")) {
+                                return !timers.contains(timer);
+                            }
+                            return null;
+                        });
+                    }
+                    case "cancelTask":
+                        ((WrappedTask) args[0]).cancel();
+                        return null;
+                    case "runAsync":
+                        return queue(async, (Consumer<WrappedTask>) args[0], null);
+                    case "runNextTick":
+                        return queue(nextTick, (Consumer<WrappedTask>) args[0], null);
+                    case "runAtEntity":
+                        return queue(regions, (Consumer<WrappedTask>) args[1], EntityTaskResult.SUCCESS);
+                    case "isOwnedByCurrentRegion":
+                        // tests never run on a region thread
+                        return !folia;
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            });
+
+            return new FoliaLib(plugin) {
+                @Override
+                public boolean isFolia() {
+                    return folia;
+                }
+
+                @Override
+                public PlatformScheduler getScheduler() {
+                    return scheduler;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package me.eternalhuman.packetboard;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.embedded.EmbeddedChannel;
+import me.eternalhuman.packetboard.protocol.ChannelInjector;
+import me.eternalhuman.packetboard.protocol.PacketIds;
+import me.eternalhuman.packetboard.protocol.ProtocolProfile;
+import me.eternalhuman.packetboard.protocol.ViewerSession;
+import org.bukkit.entity.Player;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Viewers of test boards, backed by embedded channels instead of server connections.
+ */
+final class TestViewers {
+
+    private static final int PROTOCOL_VERSION = 765; // 1.20.4
+
+    private TestViewers() {
+
+    }
+
+    /**
+     * Joins a player to the {@link TestServer}, its packets are written to an embedded channel.
+     */
+    static Player join() {
+        return join(player(UUID.randomUUID()));
+    }
+
+    static Player join(Player player) {
+        UUID uniqueId = player.getUniqueId();
+
+        TestServer.join(player);
+        sessions().put(uniqueId, session(uniqueId));
+        return player;
+    }
+
+    static void quit(Player player) {
+        TestServer.quit(player);
+        TestServer.callEvent(new PlayerQuitEvent(player, "Disconnected"));
+    }
+
+    static EmbeddedChannel channel(Player player) {
+        return (EmbeddedChannel) ChannelInjector.IMP.getSession(player).getChannel();
+    }
+
+    /**
+     * Runs the pending tasks of the channel, e.g. flushes, and reads the packets which it has sent.
+     *
+     * @return ids of the sent packets
+     */
+    static List<PacketIds> sent(Player player) {
+        EmbeddedChannel channel = channel(player);
+        channel.runPendingTasks();
+
+        List<PacketIds> packets = new ArrayList<>();
+        ByteBuf packet;
+
+        while ((packet = channel.readOutbound()) != null) {
+            packets.add(packetOf(packet));
+            packet.release();
+        }
+
+        return packets;
+    }
+
+    static PacketIds packetOf(ByteBuf packet) {
+        int id = packet.getByte(packet.readerIndex());
+
+        for (PacketIds ids : PacketIds.values()) {
+            if (ProtocolProfile.server().getPacketId(ids) == id) {
+                return ids;
+            }
+        }
+
+        throw new IllegalArgumentException("Unknown packet " + id);
+    }
+
+    static ViewerState viewer(UUID uniqueId) {
+        return new ViewerState(player(uniqueId), session(uniqueId));
+    }
+
+    static Player player(UUID uniqueId) {
+        return (Player) Proxy.newProxyInstance(Player.class.getClassLoader(), new Class<?>[]{Player.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getUniqueId":
+                            return uniqueId;
+                        case "getName":
+                            return uniqueId.toString().substring(0, 16);
+                        case "isOnline":
+                            return true;
+                        case "hashCode":
+                            return uniqueId.hashCode();
+                        case "equals":
+                            return proxy == args[0];
+                        case "toString":
+                            return "Player[" + uniqueId + "]";
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<UUID, ViewerSession> sessions() {
+        try {
+            // sessions are resolved from the server internals, test ones are put in place of them
+            Field field = ChannelInjector.class.getDeclaredField("sessions");
+            field.setAccessible(true);
+            return (Map<UUID, ViewerSession>) field.get(ChannelInjector.IMP);
+        } catch (ReflectiveOperationException exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    static ViewerSession session(UUID uniqueId) {
+        return session(uniqueId, new EmbeddedChannel());
+    }
+
+    static ViewerSession session(UUID uniqueId, Channel channel) {
+        try {
+            // sessions are created by the channel injector only
+            Constructor<ViewerSession> constructor = ViewerSession.class
+                    .getDeclaredConstructor(UUID.class, int.class, Channel.class);
+            constructor.setAccessible(true);
+            return constructor.newInstance(uniqueId, PROTOCOL_VERSION, channel);
+        } catch (ReflectiveOperationException exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package me.eternalhuman.packetboard;
+
+import me.eternalhuman.packetboard.util.TimerWheel;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TimerWheelTest {
+
+    @Test
+    public void testDeadlines() {
+        TimerWheel<Timer> wheel = new TimerWheel<>();
+        List<Timer> due = new ArrayList<>();
+        long[] delays = {1, 2, 63, 64, 65, 4095, 4096, 4097, 300_000, 1L << 24, (1L << 24) + 10};
+
+        for (long delay : delays) {
+            wheel.schedule(new Timer(), delay);
+        }
+
+        assertEquals(delays.length, wheel.getSize());
+
+        while (wheel.getSize() > 0) {
+            wheel.advance(timer -> {
+                assertEquals(wheel.getTick(), timer.getDeadline());
+                due.add(timer);
+            });
+        }
+
+        assertEquals(delays.length, due.size());
+        assertEquals((1L << 24) + 10, wheel.getTick());
+    }
+
+    @Test
+    public void testCancelAndReschedule() {
+        TimerWheel<Timer> wheel = new TimerWheel<>();
+        Timer cancelled = new Timer();
+        Timer periodic = new Timer();
+
+        wheel.schedule(cancelled, 100);
+        wheel.schedule(periodic, 5);
+
+        assertTrue(wheel.cancel(cancelled));
+        assertFalse(wheel.cancel(cancelled));
+        assertFalse(cancelled.isScheduled());
+
+        List<Long> ticks = new ArrayList<>();
+
+        for (int i = 0; i < 200; i++) {
+            wheel.advance(timer -> {
+                assertSame(periodic, timer);
+                ticks.add(wheel.getTick());
+                wheel.schedule(timer, 70);
+            });
+        }
+
+        assertEquals(3, ticks.size());
+        assertEquals(Long.valueOf(5), ticks.get(0));
+        assertEquals(Long.valueOf(75), ticks.get(1));
+        assertEquals(Long.valueOf(145), ticks.get(2));
+    }
+
+    private static final class Timer extends TimerWheel.Entry {
+
+    }
+}
@@ -0,0 +1,140 @@
+package me.eternalhuman.packetboard;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.*;
+
+public class ViewerRegistryTest {
+
+    private final Set<Consumer<UUID>> quitListeners = ConcurrentHashMap.newKeySet();
+    private final ViewerRegistry registry = new ViewerRegistry(quitListeners::add, quitListeners::remove);
+
+    @Test
+    public void testAddAndRemove() {
+        ViewerState viewer = TestViewers.viewer(UUID.randomUUID());
+        UUID uniqueId = viewer.getSession().getUniqueId();
+
+        assertTrue(registry.add(viewer));
+        // a second viewer with the same id is rejected
+        assertFalse(registry.add(TestViewers.viewer(uniqueId)));
+
+        assertTrue(registry.contains(uniqueId));
+        assertSame(viewer, registry.get(uniqueId));
+        assertEquals(1, registry.getIds().size());
+
+        assertSame(viewer, registry.remove(uniqueId));
+        assertNull(registry.remove(uniqueId));
+        assertFalse(registry.contains(uniqueId));
+        assertTrue(registry.getIds().isEmpty());
+    }
+
+    @Test
+    public void testForEachVisitsSnapshot() {
+        Set<UUID> added = new HashSet<>();
+
+        for (int i = 0; i < 100; i++) {
+            ViewerState viewer = TestViewers.viewer(UUID.randomUUID());
+            registry.add(viewer);
+            added.add(viewer.getSession().getUniqueId());
+        }
+
+        Set<UUID> visited = new HashSet<>();
+        registry.forEach(viewer -> {
+            // removed viewers are still visited, each viewer once
+            registry.remove(viewer.getSession().getUniqueId());
+            registry.add(TestViewers.viewer(UUID.randomUUID()));
+            assertTrue(visited.add(viewer.getSession().getUniqueId()));
+        });
+
+        assertTrue(visited.containsAll(added));
+        assertEquals(100, registry.getIds().size());
+    }
+
+    @Test
+    public void testQuitListener() {
+        ViewerState first = TestViewers.viewer(UUID.randomUUID());
+        ViewerState second = TestViewers.viewer(UUID.randomUUID());
+
+        assertTrue(quitListeners.isEmpty());
+
+        registry.add(first);
+        registry.add(second);
+        assertEquals(1, quitListeners.size());
+
+        // a quitting player is dropped by the listener
+        quitListeners.iterator().next().accept(first.getSession().getUniqueId());
+        assertFalse(registry.contains(first.getSession().getUniqueId()));
+        assertEquals(1, quitListeners.size());
+
+        // an empty registry isn't referenced by the listeners
+        registry.remove(second.getSession().getUniqueId());
+        assertTrue(quitListeners.isEmpty());
+    }
+
+    @Test
+    public void testConcurrentMutations() throws InterruptedException {
+        int threads = 8;
+        int viewersPerThread = 200;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        List<UUID> kept = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            List<UUID> ids = new ArrayList<>();
+            for (int i = 0; i < viewersPerThread; i++) {
+                ids.add(UUID.randomUUID());
+            }
+
+            // every thread removes its odd viewers again
+            for (int i = 0; i < ids.size(); i += 2) {
+                kept.add(ids.get(i));
+            }
+
+            List<ViewerState> viewers = new ArrayList<>();
+            for (UUID uniqueId : ids) {
+                viewers.add(TestViewers.viewer(uniqueId));
+            }
+
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException exception) {
+                    return;
+                }
+
+                for (int i = 0; i < viewers.size(); i++) {
+                    registry.add(viewers.get(i));
+                    registry.forEach(viewer -> {
+                    });
+
+                    if (i % 2 == 1) {
+                        registry.remove(ids.get(i));
+                    }
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        Set<UUID> visited = new HashSet<>();
+        registry.forEach(viewer -> assertTrue(visited.add(viewer.getSession().getUniqueId())));
+
+        assertEquals(new HashSet<>(kept), visited);
+        assertEquals(visited, registry.getIds());
+        assertEquals(1, quitListeners.size());
+    }
+}